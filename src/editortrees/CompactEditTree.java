@@ -0,0 +1,943 @@
+package editortrees;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * The same height-balanced tree with rank as EditTree, but instead of one
+ * Node object per character the nodes live in parallel primitive arrays and
+ * refer to each other by int handles. That is 19 bytes per character (plus
+ * whatever spare capacity the arrays have), compared to well over 60 for a
+ * Node, and the garbage collector only ever sees a handful of big arrays.
+ *
+ * Every tree has arrays of its own, so a tree that is thrown away takes its
+ * nodes with it. The price is that nodes can't be relinked from one tree to
+ * another, only copied, so unlike in EditTree these are not O(log N):
+ * <ul>
+ * <li>split(pos) is O(log N + size() - pos), since what it splits off is
+ * copied into new arrays.</li>
+ * <li>concatenate(other) is O(log N + other.size()), since other is copied
+ * into this tree's arrays.</li>
+ * <li>delete(start, length) is O(log N + length). Only the deleted range is
+ * copied; what follows it is joined back on without copying.</li>
+ * </ul>
+ * Everything else costs the same as in EditTree.
+ */
+public class CompactEditTree {
+
+	// handle 0 is never given out, and plays the part of NULL_NODE
+	static final int NIL = 0;
+
+	// balance codes, stored as bytes
+	static final byte SAME = 0;
+	static final byte LEFT = 1;
+	static final byte RIGHT = 2;
+
+	/**
+	 * The arrays that hold the nodes, along with a free list of handles that
+	 * were deleted and can be reused.
+	 */
+	static class Storage {
+		char[] element;
+		int[] left;
+		int[] right;
+		int[] parent;
+		int[] rank;
+		byte[] balance;
+		// first handle that has never been used
+		private int next = 1;
+		// deleted handles are chained together through their left slot
+		private int freeList = NIL;
+
+		Storage(int capacity) {
+			capacity = Math.max(capacity + 1, 16);
+			this.element = new char[capacity];
+			this.left = new int[capacity];
+			this.right = new int[capacity];
+			this.parent = new int[capacity];
+			this.rank = new int[capacity];
+			this.balance = new byte[capacity];
+		}
+
+		int allocate(char c) {
+			int n;
+			if (this.freeList != NIL) {
+				n = this.freeList;
+				this.freeList = this.left[n];
+			} else {
+				if (this.next == this.element.length) {
+					this.grow(this.next + 1);
+				}
+				n = this.next++;
+			}
+			this.element[n] = c;
+			this.left[n] = NIL;
+			this.right[n] = NIL;
+			this.parent[n] = NIL;
+			this.rank[n] = 0;
+			this.balance[n] = SAME;
+			return n;
+		}
+
+		void free(int n) {
+			this.left[n] = this.freeList;
+			this.freeList = n;
+		}
+
+		/**
+		 * Makes sure count more nodes can be allocated without the arrays
+		 * having to grow part way through.
+		 */
+		void reserve(int count) {
+			if (this.next + count > this.element.length) {
+				this.grow(this.next + count);
+			}
+		}
+
+		private void grow(int minCapacity) {
+			int capacity = Math.max(minCapacity, this.element.length + (this.element.length >> 1));
+			this.element = Arrays.copyOf(this.element, capacity);
+			this.left = Arrays.copyOf(this.left, capacity);
+			this.right = Arrays.copyOf(this.right, capacity);
+			this.parent = Arrays.copyOf(this.parent, capacity);
+			this.rank = Arrays.copyOf(this.rank, capacity);
+			this.balance = Arrays.copyOf(this.balance, capacity);
+		}
+	}
+
+	/**
+	 * A subtree root together with its height, which join and split have to
+	 * carry along since nodes only store balance codes.
+	 */
+	private static class Subtree {
+		final int root;
+		final int height;
+
+		Subtree(int root, int height) {
+			this.root = root;
+			this.height = height;
+		}
+	}
+
+	private final Storage storage;
+	private int root = NIL;
+	// rightmost node, so appending doesn't have to walk down from the root
+	private int tail = NIL;
+	private int size = 0;
+	private int rotCount = 0;
+
+	/**
+	 * Construct an empty tree
+	 */
+	public CompactEditTree() {
+		this.storage = new Storage(16);
+	}
+
+	/**
+	 * Construct a single-node tree whose element is c
+	 *
+	 * @param c
+	 */
+	public CompactEditTree(char c) {
+		this();
+		this.add(c);
+	}
+
+	/**
+	 * Create a tree whose toString is chars, in O(N) time and with no
+	 * rotations. The arrays are sized to fit exactly.
+	 *
+	 * @param chars
+	 */
+	public CompactEditTree(CharSequence chars) {
+		this.storage = new Storage(chars.length());
+		this.root = this.build(chars, 0, chars.length(), NIL);
+		this.size = chars.length();
+		this.resetTail();
+	}
+
+	private CompactEditTree(Storage storage) {
+		this.storage = storage;
+	}
+
+	/**
+	 *
+	 * @return the height of this tree
+	 */
+	public int height() {
+		Storage s = this.storage;
+		int height = -1;
+		int current = this.root;
+		while (current != NIL) {
+			height++;
+			current = (s.balance[current] == LEFT) ? s.left[current] : s.right[current];
+		}
+		return height;
+	}
+
+	/**
+	 *
+	 * @return the number of nodes in this tree
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * returns the total number of rotations done in this tree since it was
+	 * created. A double rotation counts as two.
+	 *
+	 * @return number of rotations since tree was created.
+	 */
+	public int totalRotationCount() {
+		return this.rotCount;
+	}
+
+	/**
+	 * @return how many nodes the arrays can hold before they have to grow
+	 */
+	int storageCapacity() {
+		return this.storage.element.length;
+	}
+
+	/**
+	 * return the string produced by an inorder traversal of this tree
+	 */
+	@Override
+	public String toString() {
+		char[] chars = new char[this.size];
+		this.get(0, this.size, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * @return The string of elements, ranks, and balance codes, given in a
+	 *         pre-order traversal of the tree, in the same format as
+	 *         EditTree.toDebugString()
+	 */
+	public String toDebugString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("[");
+		this.stringifyDebug(this.root, sb);
+		if (sb.length() > 2) {
+			sb.delete(sb.length() - 2, sb.length());
+		}
+		return sb.append("]").toString();
+	}
+
+	private void stringifyDebug(int n, StringBuilder sb) {
+		if (n == NIL) {
+			return;
+		}
+		Storage s = this.storage;
+		sb.append(s.element[n]);
+		sb.append(s.rank[n]);
+		sb.append(s.balance[n] == LEFT ? "/" : s.balance[n] == RIGHT ? "\\" : "=");
+		sb.append(", ");
+		this.stringifyDebug(s.left[n], sb);
+		this.stringifyDebug(s.right[n], sb);
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position in the tree
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return this.storage.element[this.find(pos)];
+	}
+
+	/**
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless the whole range is within this tree
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || length > this.size - pos) {
+			throw new IndexOutOfBoundsException();
+		}
+		char[] chars = new char[length];
+		this.get(pos, length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Copies length characters starting at pos into dest, in O(log N +
+	 * length) time.
+	 *
+	 * @param pos
+	 *            location of the beginning of the range to copy
+	 * @param length
+	 *            number of characters to copy
+	 * @param dest
+	 *            array to copy into
+	 * @param destPos
+	 *            where in dest the first character goes
+	 * @throws IndexOutOfBoundsException
+	 *             unless the whole range is within this tree and fits in dest
+	 */
+	public void get(int pos, int length, char[] dest, int destPos) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || length > this.size - pos) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (destPos < 0 || length > dest.length - destPos) {
+			throw new IndexOutOfBoundsException("range doesn't fit in the destination array");
+		}
+		if (length == 0) {
+			return;
+		}
+		int current = this.find(pos);
+		dest[destPos] = this.storage.element[current];
+		for (int k = 1; k < length; k++) {
+			current = this.successor(current);
+			dest[destPos + k] = this.storage.element[current];
+		}
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char c) {
+		int n = this.storage.allocate(c);
+		if (this.root == NIL) {
+			this.root = n;
+		} else {
+			// nothing above the tail has it in its left subtree, so no ranks
+			// change
+			this.storage.parent[n] = this.tail;
+			this.storage.right[this.tail] = n;
+			this.checkRotate(n, false);
+		}
+		this.tail = n;
+		this.size++;
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             id pos is negative or too large for this tree
+	 */
+	public void add(char c, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (pos == this.size) {
+			this.add(c);
+			return;
+		}
+		int n = this.storage.allocate(c);
+		Storage s = this.storage;
+		int current = this.root;
+		while (true) {
+			if (pos <= s.rank[current]) {
+				s.rank[current]++;
+				if (s.left[current] == NIL) {
+					s.left[current] = n;
+					s.parent[n] = current;
+					this.checkRotate(n, true);
+					break;
+				}
+				current = s.left[current];
+			} else {
+				pos -= s.rank[current] + 1;
+				if (s.right[current] == NIL) {
+					s.right[current] = n;
+					s.parent[n] = current;
+					this.checkRotate(n, false);
+					break;
+				}
+				current = s.right[current];
+			}
+		}
+		this.size++;
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position of character to delete from this tree
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		Storage s = this.storage;
+		int n = this.find(pos);
+		char deleted = s.element[n];
+		// like EditTree, a node with two children is replaced by its successor
+		if (s.left[n] != NIL && s.right[n] != NIL) {
+			int successor = s.right[n];
+			while (s.left[successor] != NIL) {
+				successor = s.left[successor];
+			}
+			s.element[n] = s.element[successor];
+			n = successor;
+		}
+		this.unlink(n);
+		s.free(n);
+		this.size--;
+		if (pos >= this.size - 1) {
+			this.resetTail();
+		}
+		return deleted;
+	}
+
+	/**
+	 * @param start
+	 *            position of beginning of string to delete
+	 * @param length
+	 *            length of string to delete
+	 * @return a tree containing the deleted string
+	 * @throws IndexOutOfBoundsException
+	 *             unless both start and start+length-1 are in range for this
+	 *             tree.
+	 */
+	public CompactEditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		if (start < 0 || length < 0 || length > this.size() - start)
+			throw new IndexOutOfBoundsException(
+					(start < 0) ? "negative first argument to delete" : "delete range extends past end of string");
+		// t3 is joined straight back on, so only t2 needs arrays of its own
+		CompactEditTree t2 = this.splitShared(start);
+		CompactEditTree t3 = t2.splitShared(length);
+		this.concatenate(t3);
+		return t2.moveToOwnStorage();
+	}
+
+	/**
+	 * Append the contents of the other tree to this one, leaving other empty.
+	 * Other's characters have to be copied into this tree's arrays first, so
+	 * this is O(log N + other.size()).
+	 *
+	 * @param other
+	 * @throws IllegalArgumentException
+	 *             if this == other
+	 */
+	public void concatenate(CompactEditTree other) throws IllegalArgumentException {
+		if (this == other) {
+			throw new IllegalArgumentException("can't concatenate a tree with itself");
+		}
+		if (other.size == 0) {
+			return;
+		}
+		int otherRoot = other.root;
+		int otherTail = other.tail;
+		if (other.storage != this.storage) {
+			char[] chars = new char[other.size];
+			other.get(0, other.size, chars, 0);
+			other.freeAll(other.root);
+			this.storage.reserve(chars.length);
+			otherRoot = this.build(CharBuffer.wrap(chars), 0, chars.length, NIL);
+			otherTail = NIL;
+		}
+		if (this.size == 0) {
+			this.root = otherRoot;
+		} else {
+			int x = this.tail;
+			int leftSize = this.size - 1;
+			this.unlink(x);
+			int leftHeight = this.height();
+			Subtree joined = this.join(this.root, leftHeight, leftSize, x, otherRoot, this.heightOf(otherRoot));
+			this.root = joined.root;
+		}
+		this.size += other.size;
+		if (otherTail != NIL) {
+			this.tail = otherTail;
+		} else {
+			this.resetTail();
+		}
+		other.root = NIL;
+		other.tail = NIL;
+		other.size = 0;
+	}
+
+	/**
+	 * Splits off everything from pos on into a new tree with arrays of its
+	 * own, in O(log N + size() - pos) time. The nodes it took over are handed
+	 * back to this tree's free list.
+	 *
+	 * @param pos
+	 *            where to split this tree
+	 * @return a new tree containing all of the elements of this tree whose
+	 *         positions are >= position.
+	 * @throws IndexOutOfBoundsException
+	 */
+	public CompactEditTree split(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return this.splitShared(pos).moveToOwnStorage();
+	}
+
+	/**
+	 * Splits off everything from pos on, which must be in range, in time
+	 * proportional to the height of this tree. The new tree shares this tree's
+	 * arrays, so it must not be handed out: its nodes would never be freed if
+	 * it were dropped.
+	 */
+	private CompactEditTree splitShared(int pos) {
+		Storage s = this.storage;
+		int height = this.height();
+		int[] path = new int[height + 1];
+		int[] heights = new int[height + 1];
+		int[] sizes = new int[height + 1];
+		boolean[] wentLeft = new boolean[height + 1];
+		int depth = 0;
+		int current = this.root;
+		int h = height;
+		int sz = this.size;
+		int relative = pos;
+		while (current != NIL) {
+			path[depth] = current;
+			heights[depth] = h;
+			sizes[depth] = sz;
+			wentLeft[depth] = relative <= s.rank[current];
+			if (wentLeft[depth]) {
+				h -= (s.balance[current] == RIGHT) ? 2 : 1;
+				sz = s.rank[current];
+				current = s.left[current];
+			} else {
+				h -= (s.balance[current] == LEFT) ? 2 : 1;
+				relative -= s.rank[current] + 1;
+				sz -= s.rank[current] + 1;
+				current = s.right[current];
+			}
+			depth++;
+		}
+
+		Subtree left = new Subtree(NIL, -1);
+		Subtree right = new Subtree(NIL, -1);
+		int rightSize = 0;
+		for (int k = depth - 1; k >= 0; k--) {
+			int n = path[k];
+			if (wentLeft[k]) {
+				int hr = heights[k] - ((s.balance[n] == LEFT) ? 2 : 1);
+				int joinedSize = rightSize + sizes[k] - s.rank[n];
+				right = this.join(right.root, right.height, rightSize, n, s.right[n], hr);
+				rightSize = joinedSize;
+			} else {
+				int hl = heights[k] - ((s.balance[n] == RIGHT) ? 2 : 1);
+				left = this.join(s.left[n], hl, s.rank[n], n, left.root, left.height);
+			}
+		}
+
+		CompactEditTree other = new CompactEditTree(this.storage);
+		other.root = right.root;
+		other.size = this.size - pos;
+		other.resetTail();
+		this.root = left.root;
+		this.size = pos;
+		this.resetTail();
+		return other;
+	}
+
+	/**
+	 * Copies this tree into new arrays sized to fit and frees its nodes in the
+	 * ones it shared, leaving it empty.
+	 *
+	 * @return the copy
+	 */
+	private CompactEditTree moveToOwnStorage() {
+		char[] chars = new char[this.size];
+		this.get(0, this.size, chars, 0);
+		this.freeAll(this.root);
+		this.root = NIL;
+		this.tail = NIL;
+		this.size = 0;
+		return new CompactEditTree(CharBuffer.wrap(chars));
+	}
+
+	/**
+	 * @param pos
+	 * @return the handle of the node at pos, which must be in range
+	 */
+	private int find(int pos) {
+		Storage s = this.storage;
+		int current = this.root;
+		while (s.rank[current] != pos) {
+			if (pos < s.rank[current]) {
+				current = s.left[current];
+			} else {
+				pos -= s.rank[current] + 1;
+				current = s.right[current];
+			}
+		}
+		return current;
+	}
+
+	private int successor(int n) {
+		Storage s = this.storage;
+		if (s.right[n] != NIL) {
+			int current = s.right[n];
+			while (s.left[current] != NIL) {
+				current = s.left[current];
+			}
+			return current;
+		}
+		int c = n;
+		int p = s.parent[n];
+		while (p != NIL && s.right[p] == c) {
+			c = p;
+			p = s.parent[p];
+		}
+		return p;
+	}
+
+	private int heightOf(int n) {
+		Storage s = this.storage;
+		int height = -1;
+		while (n != NIL) {
+			height++;
+			n = (s.balance[n] == LEFT) ? s.left[n] : s.right[n];
+		}
+		return height;
+	}
+
+	private void resetTail() {
+		Storage s = this.storage;
+		int current = this.root;
+		while (current != NIL && s.right[current] != NIL) {
+			current = s.right[current];
+		}
+		this.tail = current;
+	}
+
+	/**
+	 * Hands every node in the subtree back to the free list.
+	 */
+	private void freeAll(int n) {
+		Storage s = this.storage;
+		while (n != NIL) {
+			this.freeAll(s.left[n]);
+			int right = s.right[n];
+			s.free(n);
+			n = right;
+		}
+	}
+
+	/**
+	 * Builds a perfectly balanced subtree out of chars[start, end), the same
+	 * way Node.build does.
+	 */
+	private int build(CharSequence chars, int start, int end, int parent) {
+		if (start >= end) {
+			return NIL;
+		}
+		int mid = (start + end) >>> 1;
+		int n = this.storage.allocate(chars.charAt(mid));
+		Storage s = this.storage;
+		s.parent[n] = parent;
+		s.rank[n] = mid - start;
+		s.left[n] = this.build(chars, start, mid, n);
+		s.right[n] = this.build(chars, mid + 1, end, n);
+		if (balancedHeight(mid - start) > balancedHeight(end - mid - 1)) {
+			s.balance[n] = LEFT;
+		}
+		return n;
+	}
+
+	private static int balancedHeight(int size) {
+		return 31 - Integer.numberOfLeadingZeros(size);
+	}
+
+	/**
+	 * Splices n (which has at most one child) out of the tree, fixes the
+	 * ranks above it and rebalances. The handle is left for the caller to
+	 * free or reuse.
+	 */
+	private void unlink(int n) {
+		Storage s = this.storage;
+		int c = n;
+		int p = s.parent[n];
+		while (p != NIL) {
+			if (s.left[p] == c) {
+				s.rank[p]--;
+			}
+			c = p;
+			p = s.parent[p];
+		}
+
+		int child = (s.left[n] != NIL) ? s.left[n] : s.right[n];
+		p = s.parent[n];
+		if (child != NIL) {
+			s.parent[child] = p;
+		}
+		if (p == NIL) {
+			this.root = child;
+			return;
+		}
+		boolean isLeft = s.left[p] == n;
+		if (isLeft) {
+			s.left[p] = child;
+		} else {
+			s.right[p] = child;
+		}
+		this.checkRotateDelete(p, isLeft);
+	}
+
+	/**
+	 * Same as Node.checkRotate: rebalances after the subtree rooted at n got
+	 * one taller.
+	 *
+	 * @return true if the height of the whole tree went up
+	 */
+	private boolean checkRotate(int n, boolean isLeft) {
+		Storage s = this.storage;
+		int c = n;
+		int p = s.parent[n];
+		while (p != NIL) {
+			byte balance = s.balance[p];
+			if (balance == SAME) {
+				s.balance[p] = isLeft ? LEFT : RIGHT;
+			} else if ((balance == LEFT) != isLeft) {
+				s.balance[p] = SAME;
+				return false;
+			} else {
+				p = this.doRotation(p, c);
+				if (s.balance[p] == SAME) {
+					return false;
+				}
+			}
+			c = p;
+			p = s.parent[p];
+			isLeft = s.left[p] == c;
+		}
+		return true;
+	}
+
+	/**
+	 * Same as Node.checkRotateDelete: rebalances after the left (isLeft) or
+	 * right subtree of p got one shorter.
+	 */
+	private void checkRotateDelete(int p, boolean isLeft) {
+		Storage s = this.storage;
+		while (p != NIL) {
+			int subtreeRoot;
+			byte balance = s.balance[p];
+			if (balance == SAME) {
+				s.balance[p] = isLeft ? RIGHT : LEFT;
+				return;
+			} else if ((balance == LEFT) == isLeft) {
+				s.balance[p] = SAME;
+				subtreeRoot = p;
+			} else {
+				int sibling = isLeft ? s.right[p] : s.left[p];
+				subtreeRoot = this.doRotation(p, sibling);
+				if (s.balance[subtreeRoot] != SAME) {
+					return;
+				}
+			}
+			p = s.parent[subtreeRoot];
+			isLeft = s.left[p] == subtreeRoot;
+		}
+	}
+
+	private int doRotation(int a, int b) {
+		Storage s = this.storage;
+		if (s.balance[a] == LEFT) {
+			if (s.balance[b] == RIGHT) {
+				return this.doubleRight(a, b);
+			}
+			return this.singleRight(a, b);
+		}
+		if (s.balance[b] == LEFT) {
+			return this.doubleLeft(a, b);
+		}
+		return this.singleLeft(a, b);
+	}
+
+	private int singleRight(int a, int b) {
+		Storage s = this.storage;
+		this.rotCount++;
+		int bright = s.right[b];
+		this.replaceWith(a, b);
+		s.left[a] = bright;
+		s.parent[a] = b;
+		s.right[b] = a;
+		if (bright != NIL) {
+			s.parent[bright] = a;
+		}
+		s.rank[a] -= s.rank[b] + 1;
+		if (s.balance[b] == SAME) {
+			s.balance[a] = LEFT;
+			s.balance[b] = RIGHT;
+		} else {
+			s.balance[a] = SAME;
+			s.balance[b] = SAME;
+		}
+		return b;
+	}
+
+	private int singleLeft(int a, int b) {
+		Storage s = this.storage;
+		this.rotCount++;
+		int bleft = s.left[b];
+		this.replaceWith(a, b);
+		s.right[a] = bleft;
+		s.parent[a] = b;
+		s.left[b] = a;
+		if (bleft != NIL) {
+			s.parent[bleft] = a;
+		}
+		s.rank[b] += s.rank[a] + 1;
+		if (s.balance[b] == SAME) {
+			s.balance[a] = RIGHT;
+			s.balance[b] = LEFT;
+		} else {
+			s.balance[a] = SAME;
+			s.balance[b] = SAME;
+		}
+		return b;
+	}
+
+	private int doubleRight(int a, int b) {
+		Storage s = this.storage;
+		this.rotCount += 2;
+		int c = s.right[b];
+		int cleft = s.left[c];
+		int cright = s.right[c];
+		this.replaceWith(a, c);
+		s.right[b] = cleft;
+		if (cleft != NIL) {
+			s.parent[cleft] = b;
+		}
+		s.left[a] = cright;
+		if (cright != NIL) {
+			s.parent[cright] = a;
+		}
+		s.left[c] = b;
+		s.right[c] = a;
+		s.parent[b] = c;
+		s.parent[a] = c;
+		s.rank[c] += s.rank[b] + 1;
+		s.rank[a] -= s.rank[c] + 1;
+		s.balance[a] = (s.balance[c] == LEFT) ? RIGHT : SAME;
+		s.balance[b] = (s.balance[c] == RIGHT) ? LEFT : SAME;
+		s.balance[c] = SAME;
+		return c;
+	}
+
+	private int doubleLeft(int a, int b) {
+		Storage s = this.storage;
+		this.rotCount += 2;
+		int c = s.left[b];
+		int cleft = s.left[c];
+		int cright = s.right[c];
+		this.replaceWith(a, c);
+		s.right[a] = cleft;
+		if (cleft != NIL) {
+			s.parent[cleft] = a;
+		}
+		s.left[b] = cright;
+		if (cright != NIL) {
+			s.parent[cright] = b;
+		}
+		s.left[c] = a;
+		s.right[c] = b;
+		s.parent[a] = c;
+		s.parent[b] = c;
+		s.rank[b] -= s.rank[c] + 1;
+		s.rank[c] += s.rank[a] + 1;
+		s.balance[a] = (s.balance[c] == RIGHT) ? LEFT : SAME;
+		s.balance[b] = (s.balance[c] == LEFT) ? RIGHT : SAME;
+		s.balance[c] = SAME;
+		return c;
+	}
+
+	/**
+	 * Puts n where a used to hang from its parent (or makes it the root).
+	 */
+	private void replaceWith(int a, int n) {
+		Storage s = this.storage;
+		int p = s.parent[a];
+		s.parent[n] = p;
+		if (p == NIL) {
+			this.root = n;
+		} else if (s.left[p] == a) {
+			s.left[p] = n;
+		} else {
+			s.right[p] = n;
+		}
+	}
+
+	/**
+	 * Same as Node.join: joins l, x and r (in that inorder order) in time
+	 * proportional to the difference in their heights. Uses this.root as
+	 * scratch space.
+	 */
+	private Subtree join(int l, int hl, int sl, int x, int r, int hr) {
+		Storage s = this.storage;
+		s.parent[l] = NIL;
+		s.parent[r] = NIL;
+		if (Math.abs(hl - hr) <= 1) {
+			this.link(x, l, r, sl, NIL);
+			s.balance[x] = (hl == hr) ? SAME : (hl > hr) ? LEFT : RIGHT;
+			return new Subtree(x, Math.max(hl, hr) + 1);
+		}
+
+		boolean grew;
+		if (hl > hr) {
+			this.root = l;
+			int p = NIL;
+			int c = l;
+			int h = hl;
+			int sz = sl;
+			while (h > hr + 1) {
+				h -= (s.balance[c] == LEFT) ? 2 : 1;
+				sz -= s.rank[c] + 1;
+				p = c;
+				c = s.right[c];
+			}
+			this.link(x, c, r, sz, p);
+			s.balance[x] = (h > hr) ? LEFT : SAME;
+			s.right[p] = x;
+			grew = this.checkRotate(x, false);
+		} else {
+			this.root = r;
+			int p = NIL;
+			int c = r;
+			int h = hr;
+			while (h > hl + 1) {
+				s.rank[c] += sl + 1;
+				h -= (s.balance[c] == RIGHT) ? 2 : 1;
+				p = c;
+				c = s.left[c];
+			}
+			this.link(x, l, c, sl, p);
+			s.balance[x] = (h > hl) ? RIGHT : SAME;
+			s.left[p] = x;
+			grew = this.checkRotate(x, true);
+		}
+		return new Subtree(this.root, Math.max(hl, hr) + (grew ? 1 : 0));
+	}
+
+	private void link(int x, int l, int r, int rank, int parent) {
+		Storage s = this.storage;
+		s.left[x] = l;
+		s.right[x] = r;
+		s.rank[x] = rank;
+		s.parent[x] = parent;
+		if (l != NIL) {
+			s.parent[l] = x;
+		}
+		if (r != NIL) {
+			s.parent[r] = x;
+		}
+	}
+}
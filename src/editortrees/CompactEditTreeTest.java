@@ -0,0 +1,132 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * CompactEditTree should be indistinguishable from EditTree apart from how it
+ * stores its nodes, so most of these tests just run both side by side.
+ *
+ */
+public class CompactEditTreeTest {
+
+	@Test
+	public void testSameShapeAsEditTree() {
+		EditTree t = new EditTree();
+		CompactEditTree c = new CompactEditTree();
+		Random random = new Random(230);
+		for (int k = 0; k < 5000; k++) {
+			char ch = (char) ('a' + random.nextInt(26));
+			int pos = random.nextInt(t.size() + 1);
+			t.add(ch, pos);
+			c.add(ch, pos);
+			if (k % 4 == 0) {
+				pos = random.nextInt(t.size());
+				assertEquals(t.delete(pos), c.delete(pos));
+			}
+		}
+		assertEquals(t.toDebugString(), c.toDebugString());
+		assertEquals(t.toString(), c.toString());
+		assertEquals(t.height(), c.height());
+		assertEquals(t.size(), c.size());
+		assertEquals(t.totalRotationCount(), c.totalRotationCount());
+		assertEquals(t.get(100, 250), c.get(100, 250));
+	}
+
+	@Test
+	public void testBuildAndSplit() {
+		CompactEditTree c = new CompactEditTree("abcde");
+		assertEquals("[c2=, b1/, a0=, e1/, d0=]", c.toDebugString());
+		CompactEditTree c2 = c.split(2);
+		assertEquals("ab", c.toString());
+		assertEquals("cde", c2.toString());
+		c2.add('f');
+		c.concatenate(c2);
+		assertEquals("abcdef", c.toString());
+		assertEquals(0, c2.size());
+
+		CompactEditTree other = new CompactEditTree("xyz");
+		c.concatenate(other);
+		assertEquals("abcdefxyz", c.toString());
+		assertEquals("cdef", c.delete(2, 4).toString());
+		assertEquals("abxyz", c.toString());
+	}
+
+	@Test
+	public void testReusesDeletedHandles() {
+		CompactEditTree c = new CompactEditTree();
+		for (int k = 0; k < 100; k++) {
+			c.add('a');
+		}
+		int capacity = c.storageCapacity();
+		for (int round = 0; round < 100; round++) {
+			for (int k = 0; k < 50; k++) {
+				c.delete(0);
+			}
+			for (int k = 0; k < 50; k++) {
+				c.add('b', k);
+			}
+		}
+		assertEquals(capacity, c.storageCapacity());
+		assertEquals(100, c.size());
+	}
+
+	@Test
+	public void testRangeDeletesGiveBackHandles() {
+		StringBuilder sb = new StringBuilder();
+		for (int k = 0; k < 1000; k++) {
+			sb.append((char) ('a' + k % 26));
+		}
+		CompactEditTree c = new CompactEditTree(sb);
+		Random random = new Random(230);
+		int capacity = 0;
+		for (int round = 0; round < 2000; round++) {
+			int start = random.nextInt(900);
+			String deleted = c.delete(start, 100).toString();
+			for (int k = 0; k < deleted.length(); k++) {
+				c.add(deleted.charAt(k), start + k);
+			}
+			c.concatenate(c.split(random.nextInt(c.size() + 1)));
+			if (round == 10) {
+				capacity = c.storageCapacity();
+			}
+		}
+		assertEquals(sb.toString(), c.toString());
+		assertEquals(capacity, c.storageCapacity());
+	}
+
+	@Test
+	public void testThrowsIndexExceptions() {
+		CompactEditTree c = new CompactEditTree("abc");
+		try {
+			c.get(3);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			c.add('d', 4);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			c.delete(-1);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			c.get(1, Integer.MAX_VALUE);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			c.delete(1, Integer.MAX_VALUE);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		assertEquals("abc", c.toString());
+	}
+}
@@ -0,0 +1,356 @@
+package editortrees;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * An EditTree that many threads can read while one thread at a time edits
+ * it. Edits take the write lock of a StampedLock. The short reads (get, a
+ * range get, size) don't lock at all: they walk the tree optimistically and
+ * then check the stamp, and only if an edit got in the way do they take the
+ * read lock and walk it again.
+ *
+ * A walk that races with a rotation can see links that are half changed,
+ * even ones that loop back on themselves, so the optimistic walks here put a
+ * bound on how many steps they take and treat any exception as a sign that
+ * the stamp won't validate. Their result is never used unless it does.
+ * EditTree's own get can't be used for this, since its walk isn't bounded
+ * and it starts from a finger that the writer may be moving.
+ */
+public class ConcurrentEditTree {
+
+	// taller than any AVL tree whose size fits in an int
+	private static final int MAX_HEIGHT = 64;
+
+	private final EditTree tree;
+	private final StampedLock lock = new StampedLock();
+
+	/**
+	 * Construct an empty tree
+	 */
+	public ConcurrentEditTree() {
+		this(new EditTree());
+	}
+
+	/**
+	 * Create a tree whose toString is chars, in O(N) time.
+	 *
+	 * @param chars
+	 */
+	public ConcurrentEditTree(CharSequence chars) {
+		this(new EditTree(chars));
+	}
+
+	/**
+	 * Takes over tree, which must not be used directly from then on.
+	 *
+	 * @param tree
+	 */
+	public ConcurrentEditTree(EditTree tree) {
+		this.tree = tree;
+	}
+
+	/**
+	 *
+	 * @return the number of characters in this tree
+	 */
+	public int size() {
+		long stamp = this.lock.tryOptimisticRead();
+		int size = this.tree.size;
+		if (this.lock.validate(stamp)) {
+			return size;
+		}
+		stamp = this.lock.readLock();
+		try {
+			return this.tree.size;
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return number of rotations done in this tree since it was created
+	 */
+	public int totalRotationCount() {
+		long stamp = this.lock.tryOptimisticRead();
+		int rotations = this.tree.rotCount;
+		if (this.lock.validate(stamp)) {
+			return rotations;
+		}
+		stamp = this.lock.readLock();
+		try {
+			return this.tree.rotCount;
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position in the tree
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		long stamp = this.lock.tryOptimisticRead();
+		if (stamp != 0) {
+			boolean inBounds = false;
+			Node n = null;
+			char c = 0;
+			try {
+				inBounds = pos >= 0 && pos < this.tree.size;
+				if (inBounds) {
+					n = descend(this.tree.root, pos);
+					c = (n == null) ? 0 : n.element;
+				}
+			} catch (RuntimeException e) {
+				n = null;
+			}
+			if (this.lock.validate(stamp)) {
+				if (!inBounds) {
+					throw new IndexOutOfBoundsException();
+				}
+				if (n != null) {
+					return c;
+				}
+			}
+		}
+		stamp = this.lock.readLock();
+		try {
+			if (pos < 0 || pos >= this.tree.size) {
+				throw new IndexOutOfBoundsException();
+			}
+			return this.tree.root.get(pos).element;
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless the whole range is within this tree
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		char[] chars = null;
+		long stamp = this.lock.tryOptimisticRead();
+		if (stamp != 0) {
+			boolean inBounds = false;
+			boolean copied = false;
+			try {
+				inBounds = pos >= 0 && length >= 0 && length <= this.tree.size - pos;
+				if (inBounds) {
+					chars = new char[length];
+					copied = copy(this.tree.root, pos, chars);
+				}
+			} catch (RuntimeException e) {
+				copied = false;
+			}
+			if (this.lock.validate(stamp)) {
+				if (!inBounds) {
+					throw new IndexOutOfBoundsException();
+				}
+				if (copied) {
+					return new String(chars);
+				}
+			}
+		}
+		stamp = this.lock.readLock();
+		try {
+			if (pos < 0 || length < 0 || length > this.tree.size - pos) {
+				throw new IndexOutOfBoundsException();
+			}
+			chars = new char[length];
+			copy(this.tree.root, pos, chars);
+			return new String(chars);
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Takes the read lock. A search can run over the whole tree, so an
+	 * optimistic try would rarely get through a busy writer, and find's
+	 * successor walks can't be bounded the way a range copy can.
+	 *
+	 * @param s
+	 *            the string to search for
+	 * @param pos
+	 *            the position in the tree to begin the search
+	 * @return the position in this tree of the first occurrence of s that does
+	 *         not occur before position pos; -1 if s does not occur
+	 */
+	public int find(String s, int pos) {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.find(s, pos);
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @param s
+	 *            the string to look for
+	 * @return the position in this tree of the first occurrence of s; -1 if s
+	 *         does not occur
+	 */
+	public int find(String s) {
+		return this.find(s, 0);
+	}
+
+	@Override
+	public String toString() {
+		long stamp = this.lock.readLock();
+		try {
+			return this.tree.toString();
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @param c
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char c) {
+		long stamp = this.lock.writeLock();
+		try {
+			this.tree.add(c);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param c
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 */
+	public void add(char c, int pos) throws IndexOutOfBoundsException {
+		long stamp = this.lock.writeLock();
+		try {
+			this.tree.add(c, pos);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param pos
+	 *            position of character to delete from this tree
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		long stamp = this.lock.writeLock();
+		try {
+			return this.tree.delete(pos);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param pos
+	 *            position the first character of s ends up at
+	 * @param s
+	 *            characters to insert
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 */
+	public void insert(int pos, CharSequence s) throws IndexOutOfBoundsException {
+		long stamp = this.lock.writeLock();
+		try {
+			this.tree.insert(pos, s);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param start
+	 *            position of beginning of string to delete
+	 * @param length
+	 *            length of string to delete
+	 * @return an EditTree containing the deleted string
+	 * @throws IndexOutOfBoundsException
+	 *             unless the whole range is within this tree
+	 */
+	public EditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		long stamp = this.lock.writeLock();
+		try {
+			return this.tree.delete(start, length);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Walks down from n to pos, giving up after MAX_HEIGHT steps.
+	 *
+	 * @return the node at pos, or null if the walk ran too long or fell off
+	 *         the tree
+	 */
+	private static Node descend(Node n, int pos) {
+		for (int depth = 0; depth < MAX_HEIGHT && n != EditTree.NULL_NODE; depth++) {
+			if (pos == n.rank) {
+				return n;
+			}
+			if (pos < n.rank) {
+				n = n.left;
+			} else {
+				pos -= n.rank + 1;
+				n = n.right;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Copies dest.length characters starting at pos into dest, walking
+	 * inorder successors like EditTree.get does. Walking over a range of L
+	 * nodes takes fewer than 2L + 2 * height steps, so any more than that
+	 * means the links changed underneath it.
+	 *
+	 * @return false if the walk gave up
+	 */
+	private static boolean copy(Node root, int pos, char[] dest) {
+		if (dest.length == 0) {
+			return true;
+		}
+		Node current = descend(root, pos);
+		if (current == null) {
+			return false;
+		}
+		dest[0] = current.element;
+		int steps = 2 * dest.length + 2 * MAX_HEIGHT;
+		for (int k = 1; k < dest.length; k++) {
+			if (current.right != EditTree.NULL_NODE) {
+				current = current.right;
+				while (current.left != EditTree.NULL_NODE && --steps > 0) {
+					current = current.left;
+				}
+			} else {
+				Node c = current;
+				current = current.parent;
+				while (current != EditTree.NULL_NODE && current.right == c && --steps > 0) {
+					c = current;
+					current = current.parent;
+				}
+			}
+			if (--steps <= 0 || current == EditTree.NULL_NODE) {
+				return false;
+			}
+			dest[k] = current.element;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,142 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Readers run against one thread that keeps editing. The writer keeps the
+ * text strictly increasing (every character different, in order) and its
+ * size between LOW and HIGH, so a reader can tell from any one result
+ * whether it saw the tree partway through an edit: a torn rotation would skip
+ * a node or visit one twice, and the characters would come out of order.
+ *
+ */
+public class ConcurrentEditTreeTest {
+
+	private static final int LOW = 1000;
+	private static final int HIGH = 2000;
+
+	@Test
+	public void testSingleThreaded() {
+		ConcurrentEditTree t = new ConcurrentEditTree("abcdef");
+		t.add('g');
+		t.add('!', 0);
+		assertEquals('c', t.delete(3));
+		t.insert(1, "xyz");
+		assertEquals("!xyzabdefg", t.toString());
+		assertEquals(10, t.size());
+		assertEquals('z', t.get(3));
+		assertEquals("abde", t.get(4, 4));
+		assertEquals(6, t.find("de"));
+		assertEquals("yz", t.delete(2, 2).toString());
+		try {
+			t.get(8);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.get(1, Integer.MAX_VALUE);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testReadersNeverSeeTornEdits() throws InterruptedException {
+		StringBuilder sb = new StringBuilder();
+		boolean[] present = new boolean[Character.MAX_VALUE + 1];
+		for (int k = 0; k < LOW; k++) {
+			char c = (char) (k * 30 + 1);
+			sb.append(c);
+			present[c] = true;
+		}
+		ConcurrentEditTree t = new ConcurrentEditTree(sb);
+		AtomicBoolean done = new AtomicBoolean(false);
+		AtomicReference<String> failure = new AtomicReference<>();
+
+		List<Thread> readers = new ArrayList<>();
+		for (int r = 0; r < 4; r++) {
+			final long seed = r;
+			readers.add(new Thread(() -> {
+				Random random = new Random(seed);
+				while (!done.get() && failure.get() == null) {
+					int size = t.size();
+					if (size < LOW || size > HIGH) {
+						failure.set("size " + size);
+					}
+					int pos = random.nextInt(LOW - 100);
+					String window = t.get(pos, 100);
+					for (int k = 1; k < window.length(); k++) {
+						if (window.charAt(k - 1) >= window.charAt(k)) {
+							failure.set("out of order at " + (pos + k) + ": " + window);
+						}
+					}
+					char first = t.get(pos);
+					char next = t.get(pos + 1);
+					if (first == 0 || next == 0) {
+						failure.set("read an empty node");
+					}
+				}
+			}));
+		}
+		for (Thread reader : readers) {
+			reader.start();
+		}
+
+		Random random = new Random(230);
+		int size = LOW;
+		for (int k = 0; k < 200000 && failure.get() == null; k++) {
+			boolean grow = size == LOW || (size < HIGH && random.nextBoolean());
+			if (grow) {
+				char c;
+				do {
+					c = (char) (1 + random.nextInt(Character.MAX_VALUE));
+				} while (present[c]);
+				present[c] = true;
+				t.add(c, insertionPoint(t, size, c));
+				size++;
+			} else {
+				present[t.delete(random.nextInt(size))] = false;
+				size--;
+			}
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertEquals(null, failure.get());
+		assertEquals(size, t.size());
+		assertTrue(t.totalRotationCount() > 1000);
+		String text = t.toString();
+		for (int k = 1; k < text.length(); k++) {
+			assertTrue(text.charAt(k - 1) < text.charAt(k));
+		}
+	}
+
+	/**
+	 * @return where c goes to keep the text in order
+	 */
+	private static int insertionPoint(ConcurrentEditTree t, int size, char c) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (t.get(mid) < c) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,130 @@
+package editortrees;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * A position in an EditTree that can move back and forth and edit in place
+ * without walking down from the root each time. It sits on a node (or just
+ * past the last one), and steps to the inorder successor or predecessor by
+ * following the node links, which is amortized O(1) per step.
+ *
+ * Like a ListIterator, a cursor is between two characters: next() returns
+ * the character after it and previous() the one before it. Editing the tree
+ * other than through this cursor makes it throw
+ * ConcurrentModificationException from then on.
+ */
+public class Cursor {
+	private final EditTree tree;
+	// the node just after the cursor, or NULL_NODE at the end of the tree
+	private Node node;
+	private int pos;
+	private int expectedModCount;
+
+	Cursor(EditTree tree, int pos) {
+		this.tree = tree;
+		this.pos = pos;
+		this.node = (pos == tree.size) ? EditTree.NULL_NODE : tree.root.get(pos);
+		this.expectedModCount = tree.modCount;
+	}
+
+	/**
+	 * @return the position of the character that next() would return
+	 */
+	public int position() {
+		return this.pos;
+	}
+
+	public boolean hasNext() {
+		return this.pos < this.tree.size;
+	}
+
+	public boolean hasPrevious() {
+		return this.pos > 0;
+	}
+
+	/**
+	 * @return the character after the cursor, which then moves past it
+	 * @throws NoSuchElementException
+	 *             if the cursor is at the end of the tree
+	 */
+	public char next() {
+		this.checkForComodification();
+		if (!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		char c = this.node.element;
+		this.node = this.node.successor();
+		this.pos++;
+		return c;
+	}
+
+	/**
+	 * @return the character before the cursor, which then moves in front of
+	 *         it
+	 * @throws NoSuchElementException
+	 *             if the cursor is at the start of the tree
+	 */
+	public char previous() {
+		this.checkForComodification();
+		if (!this.hasPrevious()) {
+			throw new NoSuchElementException();
+		}
+		// there is no node past the end to take the predecessor of
+		this.node = (this.node == EditTree.NULL_NODE) ? this.tree.tail : this.node.predecessor();
+		this.pos--;
+		return this.node.element;
+	}
+
+	/**
+	 * Inserts c at the cursor and moves the cursor past it, the way typing
+	 * does. The new node is hung just before the node after the cursor, so
+	 * only the path from there up to the root has its ranks bumped and gets
+	 * rebalanced.
+	 *
+	 * @param c
+	 */
+	public void insert(char c) {
+		this.checkForComodification();
+		if (this.node == EditTree.NULL_NODE) {
+			this.tree.add(c);
+		} else {
+			this.node.addBefore(c, this.tree);
+			this.tree.size++;
+			this.tree.modified();
+		}
+		this.pos++;
+		this.expectedModCount = this.tree.modCount;
+	}
+
+	/**
+	 * Deletes the character after the cursor, like the Delete key. The cursor
+	 * stays where it is, in front of the character that followed the deleted
+	 * one. Backspace is previous() followed by delete().
+	 *
+	 * @return the character that was deleted
+	 * @throws NoSuchElementException
+	 *             if the cursor is at the end of the tree
+	 */
+	public char delete() {
+		this.checkForComodification();
+		if (!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		char deleted = this.node.element;
+		this.node = this.node.remove(this.tree);
+		this.tree.size--;
+		this.tree.modified();
+		if (this.pos >= this.tree.size - 1) {
+			this.tree.resetTail();
+		}
+		this.expectedModCount = this.tree.modCount;
+		return deleted;
+	}
+
+	private void checkForComodification() {
+		if (this.tree.modCount != this.expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+}
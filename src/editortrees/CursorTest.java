@@ -0,0 +1,135 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Edits made through a Cursor should leave the tree exactly as the same
+ * edits made with add(c, pos) and delete(pos) would, down to the shape, ranks
+ * and balance codes.
+ *
+ */
+public class CursorTest {
+
+	@Test
+	public void testWalk() {
+		EditTree t = new EditTree("abcdefghij");
+		Cursor c = t.cursor(0);
+		assertFalse(c.hasPrevious());
+		StringBuilder sb = new StringBuilder();
+		while (c.hasNext()) {
+			sb.append(c.next());
+		}
+		assertEquals("abcdefghij", sb.toString());
+		assertEquals(10, c.position());
+		sb.setLength(0);
+		while (c.hasPrevious()) {
+			sb.append(c.previous());
+		}
+		assertEquals("jihgfedcba", sb.toString());
+		try {
+			c.previous();
+			fail("Did not throw NoSuchElementException");
+		} catch (NoSuchElementException e) {
+			// success
+		}
+		c = t.cursor(10);
+		try {
+			c.next();
+			fail("Did not throw NoSuchElementException");
+		} catch (NoSuchElementException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testTyping() {
+		EditTree t = new EditTree();
+		Cursor c = t.cursor(0);
+		for (char ch : "hello world".toCharArray()) {
+			c.insert(ch);
+		}
+		assertEquals("hello world", t.toString());
+		// move back over "world" and fix the word before it
+		for (int k = 0; k < 6; k++) {
+			c.previous();
+		}
+		c.previous();
+		assertEquals('o', c.delete());
+		c.insert('0');
+		assertEquals("hell0 world", t.toString());
+		assertEquals(5, c.position());
+		assertEquals(' ', c.next());
+		assertEquals(11, t.size());
+	}
+
+	@Test
+	public void testSameTreeAsPositionalEdits() {
+		Random random = new Random(230);
+		EditTree t = new EditTree();
+		EditTree expected = new EditTree();
+		Cursor c = t.cursor(0);
+		for (int k = 0; k < 5000; k++) {
+			int pos = c.position();
+			switch (random.nextInt(4)) {
+			case 0:
+				if (c.hasNext()) {
+					assertEquals(expected.get(pos), c.next());
+				}
+				break;
+			case 1:
+				if (c.hasPrevious()) {
+					assertEquals(expected.get(pos - 1), c.previous());
+				}
+				break;
+			case 2:
+				char ch = (char) ('a' + random.nextInt(26));
+				c.insert(ch);
+				expected.add(ch, pos);
+				break;
+			default:
+				if (c.hasNext()) {
+					assertEquals(expected.delete(pos), c.delete());
+				}
+			}
+			assertEquals(expected.toDebugString(), t.toDebugString());
+		}
+		assertEquals(expected.totalRotationCount(), t.totalRotationCount());
+		assertEquals(expected.size(), t.size());
+		// the tail has to be right for appending to still work
+		t.add('!');
+		expected.add('!');
+		assertEquals(expected.toString(), t.toString());
+	}
+
+	@Test
+	public void testOtherEditsInvalidateCursor() {
+		EditTree t = new EditTree("abc");
+		Cursor c = t.cursor(1);
+		Cursor other = t.cursor(2);
+		c.insert('x');
+		try {
+			other.next();
+			fail("Did not throw ConcurrentModificationException");
+		} catch (ConcurrentModificationException e) {
+			// success
+		}
+		assertTrue(c.hasNext());
+		assertEquals('b', c.next());
+		t.delete(0);
+		try {
+			c.previous();
+			fail("Did not throw ConcurrentModificationException");
+		} catch (ConcurrentModificationException e) {
+			// success
+		}
+	}
+}
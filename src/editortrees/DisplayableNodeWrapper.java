@@ -0,0 +1,72 @@
+package editortrees;
+
+import gui.AbstractDisplayableNode;
+
+/**
+ * Lets the GUI look at a Node without Node itself having to extend
+ * AbstractDisplayableNode and carry display state around. Wrappers are made
+ * on the fly as the GUI walks the tree, so two wrappers of the same node are
+ * equal.
+ */
+class DisplayableNodeWrapper extends AbstractDisplayableNode {
+	private final Node node;
+
+	DisplayableNodeWrapper(Node node) {
+		this.node = node;
+	}
+
+	@Override
+	public boolean hasLeft() {
+		return this.node.hasLeft();
+	}
+
+	@Override
+	public AbstractDisplayableNode getLeft() {
+		return new DisplayableNodeWrapper(this.node.getLeft());
+	}
+
+	@Override
+	public boolean hasRight() {
+		return this.node.hasRight();
+	}
+
+	@Override
+	public AbstractDisplayableNode getRight() {
+		return new DisplayableNodeWrapper(this.node.getRight());
+	}
+
+	@Override
+	public boolean hasParent() {
+		return this.node.hasParent();
+	}
+
+	@Override
+	public AbstractDisplayableNode getParent() {
+		return new DisplayableNodeWrapper(this.node.getParent());
+	}
+
+	@Override
+	public String getRankString() {
+		return Integer.toString(this.node.getRank());
+	}
+
+	@Override
+	public String getBalanceString() {
+		return this.node.getBalance().toString();
+	}
+
+	@Override
+	public String getDataString() {
+		return Character.toString(this.node.getElement());
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof DisplayableNodeWrapper && ((DisplayableNodeWrapper) other).node == this.node;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this.node);
+	}
+}
@@ -1,6 +1,16 @@
 package editortrees;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import gui.AbstractDisplayableBinaryTree;
+import gui.AbstractDisplayableNode;
 
 // A height-balanced binary tree with rank that could be the basis for a text editor.
 
@@ -8,9 +18,34 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 
 	public Node root;
 	public int rotCount = 0;
+	// number of characters in the tree, kept up to date by every edit so
+	// size() and the bounds checks don't have to traverse the tree
+	int size = 0;
 	final static Node NULL_NODE = new Node();
-	public boolean rootChanged;
+	// rightmost node, so appending doesn't have to walk down from the root
+	Node tail = NULL_NODE;
+	// bumped by every edit (see modified()), so a Cursor can tell that the
+	// tree changed under it
+	int modCount = 0;
+	// The last node add(c), add(c, pos) or delete(pos) touched, and its
+	// position, so that the next lookup near it doesn't have to start over
+	// from the root. Rotations never change which position a node is at, so
+	// the finger stays good through rebalancing. Those three are the only
+	// ones that move it: every other edit, including a Cursor's, bumps
+	// modCount and so leaves it stale. Reads start from it too but never move
+	// it, so any number of threads can read a tree that nobody is editing.
+	private Node finger = NULL_NODE;
+	private int fingerPos;
+	private int fingerModCount;
 	public AbstractDisplayableBinaryTree display;
+	// trees at least this big are built, turned into strings and searched
+	// with fork/join, in pieces of up to this size. Each tree has its own, so
+	// tuning one tree doesn't change how any other behaves.
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	/**
+	 * The parallel threshold a tree starts out with.
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
 
 	/**
 	 * Construct an empty tree
@@ -27,6 +62,8 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 */
 	public EditTree(char c) {
 		this.root = new Node(c);
+		this.tail = this.root;
+		this.size = 1;
 	}
 
 	/**
@@ -37,7 +74,77 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 * @param s
 	 */
 	public EditTree(String s) {
+		this((CharSequence) s);
+	}
+
+	/**
+	 * Create an EditTree whose toString is the contents of chars, in O(N)
+	 * time. The array is read in place, not copied.
+	 * 
+	 * @param chars
+	 */
+	public EditTree(char[] chars) {
+		this(CharBuffer.wrap(chars));
+	}
+
+	/**
+	 * Create an EditTree whose toString is the contents of chars, in O(N)
+	 * time. The tree comes out perfectly balanced, so no rotations are done.
+	 * At or above the default parallel threshold the two halves of each range
+	 * are built at the same time on the common ForkJoinPool.
+	 * 
+	 * @param chars
+	 */
+	public EditTree(CharSequence chars) {
+		this(chars, DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * Same as EditTree(CharSequence), but with the given parallel threshold,
+	 * which the tree keeps (see setParallelThreshold).
+	 * 
+	 * @param chars
+	 * @param parallelThreshold
+	 * @throws IllegalArgumentException
+	 *             if parallelThreshold is less than 1
+	 */
+	public EditTree(CharSequence chars, int parallelThreshold) {
+		this.setParallelThreshold(parallelThreshold);
+		int threshold = this.parallelThreshold;
+		if (chars.length() >= threshold) {
+			this.root = ForkJoinPool.commonPool()
+					.invoke(new Node.BuildTask(chars, 0, chars.length(), NULL_NODE, threshold));
+		} else {
+			this.root = Node.build(chars, 0, chars.length(), NULL_NODE);
+		}
+		this.size = chars.length();
+		this.resetTail();
+	}
+
+	/**
+	 * Create an EditTree out of everything left in reader, in O(N) time. The
+	 * characters are buffered in a char[] rather than a String, so a large
+	 * document is only held in memory once besides the tree itself.
+	 * 
+	 * @param reader
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	public EditTree(Reader reader) throws IOException {
+		this(readFully(reader));
+	}
 
+	private static CharBuffer readFully(Reader reader) throws IOException {
+		char[] buffer = new char[8192];
+		int length = 0;
+		int read;
+		while ((read = reader.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+		}
+		return CharBuffer.wrap(buffer, 0, length);
 	}
 
 	/**
@@ -49,6 +156,8 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	public EditTree(EditTree e) {
 		this.root = NULL_NODE;
 		this.root = this.root.copy(e.root);
+		this.size = e.size;
+		this.resetTail();
 	}
 
 	/**
@@ -71,14 +180,46 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	}
 
 	/**
-	 * return the string produced by an inorder traversal of this tree
+	 * return the string produced by an inorder traversal of this tree. At or
+	 * above the parallel threshold, subtrees are written into their places in
+	 * the result at the same time on the common ForkJoinPool.
 	 */
 	@Override
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		this.root.stringify(sb);
-		return sb.toString(); // replace by a real calculation.
+		char[] chars = new char[this.size];
+		int threshold = this.parallelThreshold;
+		if (this.size >= threshold) {
+			ForkJoinPool.commonPool().invoke(new Node.StringifyTask(this.root, this.size, chars, 0, threshold));
+		} else {
+			this.root.stringify(chars, 0);
+		}
+		return new String(chars);
+	}
 
+	/**
+	 * @return the size at which toString and parallelFind on this tree start
+	 *         using fork/join
+	 */
+	public int getParallelThreshold() {
+		return this.parallelThreshold;
+	}
+
+	/**
+	 * Sets the size at which toString and parallelFind on this tree start
+	 * using fork/join; only this tree is affected, and trees split off it
+	 * start out with the same threshold. It is also the size of the pieces
+	 * that are done sequentially, so it shouldn't be much smaller than the
+	 * default of 65536, or the tasks cost more than they save.
+	 * 
+	 * @param threshold
+	 * @throws IllegalArgumentException
+	 *             if threshold is less than 1
+	 */
+	public void setParallelThreshold(int threshold) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("threshold must be positive");
+		}
+		this.parallelThreshold = threshold;
 	}
 
 	/**
@@ -96,7 +237,9 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 *         pre-order traversal of the tree.
 	 */
 	public String toDebugString() {
-		StringBuilder sb = new StringBuilder();
+		// most nodes are near the bottom and have one or two digit ranks,
+		// so six characters apiece is usually enough to never regrow
+		StringBuilder sb = new StringBuilder(6 * this.size + 2);
 		sb.append("[");
 		this.root.stringifyDebug(sb);
 		if (sb.length() > 2) {
@@ -113,14 +256,65 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 * @throws IndexOutOfBoundsException
 	 */
 	public char get(int pos) throws IndexOutOfBoundsException {
-		if (pos < 0 || pos > this.root.size()) {
+		if (pos < 0 || pos >= this.size) {
 			throw new IndexOutOfBoundsException();
 		}
 
-		Node current = this.root.get(pos);
+		Node current = this.findNode(pos);
 		return current.element;
 	}
 
+	/**
+	 * Finds the node at pos for an edit, and leaves the finger on it.
+	 * 
+	 * @param pos
+	 *            position of a node in this tree
+	 * @return the node at pos
+	 */
+	private Node locate(int pos) {
+		Node n = this.findNode(pos);
+		this.setFinger(n, pos);
+		return n;
+	}
+
+	/**
+	 * Finds the node at pos, starting from the finger if it is still good and
+	 * from the root if not. Changes nothing, so it is safe for reads.
+	 * 
+	 * @param pos
+	 *            position of a node in this tree
+	 * @return the node at pos
+	 */
+	private Node findNode(int pos) {
+		if (this.finger != NULL_NODE && this.fingerModCount == this.modCount) {
+			return this.finger.nodeAt(this.fingerPos, pos);
+		}
+		return this.root.get(pos);
+	}
+
+	private void setFinger(Node n, int pos) {
+		this.finger = n;
+		this.fingerPos = pos;
+		this.fingerModCount = this.modCount;
+	}
+
+	/**
+	 * Walks down to pos once; after that the cursor moves and edits by
+	 * following node links, so each step is amortized O(1).
+	 *
+	 * @param pos
+	 *            position of the character the cursor starts in front of;
+	 *            size() puts it at the end
+	 * @return a cursor over this tree
+	 * @throws IndexOutOfBoundsException
+	 */
+	public Cursor cursor(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		return new Cursor(this, pos);
+	}
+
 	/**
 	 * 
 	 * @param c
@@ -136,17 +330,22 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 		// you!
 		// 2. Unit tests are cumulative, and many things are based on add(), so
 		// make sure that you get this one correct.
-		Node newN = this.root.add(c, NULL_NODE, this);
-		if (!this.rootChanged) {
+		Node newN = new Node(c);
+		if (this.root == NULL_NODE) {
 			this.root = newN;
+		} else {
+			// The new node hangs off the right of the tail, so it isn't in
+			// the left subtree of anything and no ranks need to change. Only
+			// the balance codes on the way back up do.
+			newN.parent = this.tail;
+			this.tail.right = newN;
+			newN.spreadBloom();
+			newN.checkRotate(false, this);
 		}
-		this.rootChanged = false;
-
-	}
-
-	public void setRoot(Node n) {
-		this.root = n;
-		this.rootChanged = true;
+		this.tail = newN;
+		this.size++;
+		this.modified();
+		this.setFinger(newN, this.size - 1);
 	}
 
 	/**
@@ -159,20 +358,25 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 *             id pos is negative or too large for this tree
 	 */
 	public void add(char c, int pos) throws IndexOutOfBoundsException {
-		// might be able to do this better by placing it in Node class
-		if (pos < 0) {
+		if (pos < 0 || pos > this.size) {
 			throw new IndexOutOfBoundsException();
 		}
-		if (this.root == EditTree.NULL_NODE) {
-			if (pos != 0) {
-				throw new IndexOutOfBoundsException();
-			}
-			this.root = new Node(c);
-			this.root.parent = EditTree.NULL_NODE;
+		if (pos == this.size) {
+			// same shape as walking down the right spine, but O(1) to find
+			this.add(c);
+			return;
+		}
+		Node n;
+		if (this.finger != NULL_NODE && this.fingerModCount == this.modCount) {
+			// hang the new node just before the one at pos, which the finger
+			// gets to without a trip down from the root
+			n = this.locate(pos).addBefore(c, this);
 		} else {
-			this.root.add(c, NULL_NODE, this, pos);
-
+			n = this.root.add(c, this, pos);
 		}
+		this.size++;
+		this.modified();
+		this.setFinger(n, pos);
 	}
 
 	/**
@@ -180,7 +384,7 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 * @return the number of nodes in this tree
 	 */
 	public int size() {
-		return this.root.size(); // replace by a real calculation.
+		return this.size;
 	}
 
 	/**
@@ -196,17 +400,27 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 		// node to be deleted with either its in-order successor or predecessor.
 		// The tests assume assume that you will replace it with the
 		// *successor*.
-		if (this.root != NULL_NODE && pos >= 0) {
-			// will check to see if pos > than number of nodes in tree inside
-			// the node class and throw an exception there
-			return this.root.delete(pos, this);
+		if (pos < 0 || pos >= this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		Node n = this.locate(pos);
+		char deleted = n.element;
+		Node next = n.remove(this);
+		this.size--;
+		this.modified();
+		// the last node is unlinked either when it is deleted itself or when
+		// it is the successor that replaces the second to last one
+		if (pos >= this.size - 1) {
+			this.resetTail();
 		}
-		throw new IndexOutOfBoundsException();
+		// whatever followed the deleted character is now at pos
+		this.setFinger(next, pos);
+		return deleted;
 	}
 
 	/**
-	 * This method operates in O(length*log N), where N is the size of this
-	 * tree.
+	 * This method operates in O(log N + length), where N is the size of this
+	 * tree: it walks down to pos once and then follows inorder successors.
 	 * 
 	 * @param pos
 	 *            location of the beginning of the string to retrieve
@@ -218,7 +432,110 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 *             within this tree.
 	 */
 	public String get(int pos, int length) throws IndexOutOfBoundsException {
-		return "";
+		if (pos < 0 || length < 0 || length > this.size - pos) {
+			throw new IndexOutOfBoundsException();
+		}
+		char[] chars = new char[length];
+		this.get(pos, length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Copies length characters starting at pos into dest, so callers that
+	 * read the same range over and over can reuse one buffer instead of
+	 * getting a new String each time.
+	 * 
+	 * @param pos
+	 *            location of the beginning of the range to copy
+	 * @param length
+	 *            number of characters to copy
+	 * @param dest
+	 *            array to copy into
+	 * @param destPos
+	 *            where in dest the first character goes
+	 * @throws IndexOutOfBoundsException
+	 *             unless the whole range is within this tree and fits in dest
+	 */
+	public void get(int pos, int length, char[] dest, int destPos) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || length > this.size - pos) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (destPos < 0 || length > dest.length - destPos) {
+			throw new IndexOutOfBoundsException("range doesn't fit in the destination array");
+		}
+		if (length == 0) {
+			return;
+		}
+		Node current = this.findNode(pos);
+		dest[destPos] = current.element;
+		for (int k = 1; k < length; k++) {
+			current = current.successor();
+			dest[destPos + k] = current.element;
+		}
+	}
+
+	/**
+	 * Puts length characters starting at pos into dest, advancing its
+	 * position, like CharBuffer.put would.
+	 * 
+	 * @param pos
+	 *            location of the beginning of the range to copy
+	 * @param length
+	 *            number of characters to copy
+	 * @param dest
+	 *            buffer to copy into
+	 * @throws IndexOutOfBoundsException
+	 *             unless the whole range is within this tree
+	 * @throws BufferOverflowException
+	 *             if dest doesn't have room for length characters
+	 */
+	public void get(int pos, int length, CharBuffer dest) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || length > this.size - pos) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (dest.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+		if (dest.hasArray()) {
+			this.get(pos, length, dest.array(), dest.arrayOffset() + dest.position());
+			dest.position(dest.position() + length);
+			return;
+		}
+		if (length == 0) {
+			return;
+		}
+		Node current = this.findNode(pos);
+		dest.put(current.element);
+		for (int k = 1; k < length; k++) {
+			current = current.successor();
+			dest.put(current.element);
+		}
+	}
+
+	/**
+	 * Inserts all of s at pos in O(log N + length of s) time. The characters
+	 * are built into a balanced tree of their own, in O(length of s), which
+	 * is then joined in between the two halves of this tree. Only the join
+	 * paths are rebalanced, instead of every character doing an add with its
+	 * own descent and rotations.
+	 * 
+	 * @param pos
+	 *            position the first character of s ends up at
+	 * @param s
+	 *            characters to insert
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 */
+	public void insert(int pos, CharSequence s) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (s.length() == 0) {
+			return;
+		}
+		EditTree rest = this.split(pos);
+		this.concatenate(new EditTree(s, this.parallelThreshold));
+		this.concatenate(rest);
 	}
 
 	/**
@@ -237,7 +554,7 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 *             tree.
 	 */
 	public EditTree delete(int start, int length) throws IndexOutOfBoundsException {
-		if (start < 0 || start + length >= this.size())
+		if (start < 0 || length < 0 || length > this.size() - start)
 			throw new IndexOutOfBoundsException(
 					(start < 0) ? "negative first argument to delete" : "delete range extends past end of string");
 		EditTree t2 = this.split(start);
@@ -256,7 +573,33 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 *             if this == other
 	 */
 	public void concatenate(EditTree other) throws IllegalArgumentException {
-
+		if (this == other) {
+			throw new IllegalArgumentException("can't concatenate a tree with itself");
+		}
+		if (other.size == 0) {
+			return;
+		}
+		if (this.size == 0) {
+			this.root = other.root;
+			this.size = other.size;
+			this.tail = other.tail;
+		} else {
+			// join needs a node to put between the two trees, and the last
+			// node of this tree is the cheapest one to take out
+			Node x = this.tail;
+			x.remove(this);
+			int leftSize = this.size - 1;
+			Node.Subtree joined = Node.join(this.root, this.root.height(), leftSize, x, other.root,
+					other.root.height(), this);
+			this.root = joined.root;
+			this.size = leftSize + 1 + other.size;
+			this.tail = other.tail;
+		}
+		other.root = NULL_NODE;
+		other.tail = NULL_NODE;
+		other.size = 0;
+		this.modified();
+		other.modified();
 	}
 
 	/**
@@ -271,11 +614,75 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 * @throws IndexOutOfBoundsException
 	 */
 	public EditTree split(int pos) throws IndexOutOfBoundsException {
-		return null; // replace by a real calculation.
+		if (pos < 0 || pos > this.size) {
+			throw new IndexOutOfBoundsException();
+		}
+		// Walk down to pos, remembering each node on the path and which way
+		// we went. The height and size of each subtree on the path can be
+		// worked out from the balance codes and ranks on the way down.
+		int height = this.root.height();
+		Node[] path = new Node[height + 1];
+		int[] heights = new int[height + 1];
+		int[] sizes = new int[height + 1];
+		boolean[] wentLeft = new boolean[height + 1];
+		int depth = 0;
+		Node current = this.root;
+		int h = height;
+		int s = this.size;
+		int relative = pos;
+		while (current != NULL_NODE) {
+			path[depth] = current;
+			heights[depth] = h;
+			sizes[depth] = s;
+			wentLeft[depth] = relative <= current.rank;
+			if (wentLeft[depth]) {
+				h -= (current.balance == Node.Code.RIGHT) ? 2 : 1;
+				s = current.rank;
+				current = current.left;
+			} else {
+				h -= (current.balance == Node.Code.LEFT) ? 2 : 1;
+				relative -= current.rank + 1;
+				s -= current.rank + 1;
+				current = current.right;
+			}
+			depth++;
+		}
+
+		// Then rebuild both halves bottom-up. Each node on the path is joined
+		// onto the half it belongs to, together with its subtree on that
+		// side. The heights telescope, so all of the joins add up to
+		// O(log N).
+		Node.Subtree left = new Node.Subtree(NULL_NODE, -1);
+		Node.Subtree right = new Node.Subtree(NULL_NODE, -1);
+		int rightSize = 0;
+		for (int k = depth - 1; k >= 0; k--) {
+			Node n = path[k];
+			if (wentLeft[k]) {
+				int hr = heights[k] - ((n.balance == Node.Code.LEFT) ? 2 : 1);
+				int joinedSize = rightSize + sizes[k] - n.rank;
+				right = Node.join(right.root, right.height, rightSize, n, n.right, hr, this);
+				rightSize = joinedSize;
+			} else {
+				int hl = heights[k] - ((n.balance == Node.Code.RIGHT) ? 2 : 1);
+				left = Node.join(n.left, hl, n.rank, n, left.root, left.height, this);
+			}
+		}
+
+		EditTree other = new EditTree();
+		other.parallelThreshold = this.parallelThreshold;
+		other.root = right.root;
+		other.size = this.size - pos;
+		other.resetTail();
+		this.root = left.root;
+		this.size = pos;
+		this.resetTail();
+		this.modified();
+		return other;
 	}
 
 	/**
-	 * Don't worry if you can't do this one efficiently.
+	 * Searches the tree itself rather than a copy of its text, so it needs
+	 * O(length of s) extra space. See find(String, int).
 	 * 
 	 * @param s
 	 *            the string to look for
@@ -283,10 +690,21 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 *         does not occur
 	 */
 	public int find(String s) {
-		return -2;
+		return this.find(s, 0);
 	}
 
 	/**
+	 * Runs Knuth-Morris-Pratt over the characters from pos on, walking inorder
+	 * successors from the node at pos. It never backs up in the tree, and it
+	 * stops as soon as it finds a match or there are too few characters left
+	 * to complete one. Like String.indexOf, a negative pos searches from the
+	 * start and the empty string is found at pos (or at the end, if pos is
+	 * past it).
+	 * 
+	 * The blooms on the nodes let it give up right away if some character of s
+	 * isn't in the tree at all. Whenever nothing is partly matched, it also
+	 * jumps straight to the next character that could start a match, skipping
+	 * whole subtrees that don't have s.charAt(0)'s bit.
 	 * 
 	 * @param s
 	 *            the string to search for
@@ -296,17 +714,295 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	 *         not occur before position pos; -1 if s does not occur
 	 */
 	public int find(String s, int pos) {
-		return -2;
+		pos = Math.max(pos, 0);
+		int length = s.length();
+		if (length == 0) {
+			return Math.min(pos, this.size);
+		}
+		if (pos >= this.size || length > this.size - pos || !this.mightContain(s)) {
+			return -1;
+		}
+		return this.find(s, failureTable(s), pos, this.size);
+	}
+
+	/**
+	 * Does the same search as find(String, int), but splits the tree into
+	 * chunks along subtree boundaries and searches them at the same time on
+	 * the common ForkJoinPool. A match can start in one chunk and end in the
+	 * next, so each chunk's search runs up to length of s - 1 characters past
+	 * its end. As soon as a match is found, chunks further right that haven't
+	 * started yet are cancelled, and ones that have stop at their next split.
+	 * Below the parallel threshold this is just find(s, pos).
+	 * 
+	 * @param s
+	 *            the string to search for
+	 * @param pos
+	 *            the position in the tree to begin the search
+	 * @return the position in this tree of the first occurrence of s that does
+	 *         not occur before position pos; -1 if s does not occur
+	 */
+	public int parallelFind(String s, int pos) {
+		pos = Math.max(pos, 0);
+		int threshold = this.parallelThreshold;
+		if (s.isEmpty() || pos >= this.size || this.size - pos < threshold) {
+			return this.find(s, pos);
+		}
+		if (s.length() > this.size - pos || !this.mightContain(s)) {
+			return -1;
+		}
+		FindTask task = new FindTask(s, failureTable(s), pos, new AtomicInteger(Integer.MAX_VALUE), threshold,
+				this.root, 0, this.size);
+		return ForkJoinPool.commonPool().invoke(task);
 	}
 
 	/**
-	 * @return The root of this tree.
+	 * @return false if the root's bloom shows some character of s isn't in
+	 *         the tree at all
 	 */
-	public Node getRoot() {
+	private boolean mightContain(String s) {
+		long needed = 0;
+		for (int k = 0; k < s.length(); k++) {
+			needed |= Node.bit(s.charAt(k));
+		}
+		return (this.root.bloom & needed) == needed;
+	}
+
+	/**
+	 * The search behind find and parallelFind: the first occurrence of s that
+	 * starts at a position in [from, to). It may read past to to finish a
+	 * match. s must not be empty, and from must be a position in the tree.
+	 * 
+	 * @param s
+	 * @param fallback
+	 *            failureTable(s)
+	 * @param from
+	 * @param to
+	 * @return the position of the match, or -1 if there is none
+	 */
+	private int find(String s, int[] fallback, int from, int to) {
+		int length = s.length();
+		long first = Node.bit(s.charAt(0));
+		int matched = 0;
+		SearchPoint at = new SearchPoint(this.root.get(from), from);
+		while (true) {
+			if (matched == 0 && (Node.bit(at.node.element) & first) == 0 && (!at.skipTo(first) || at.pos >= to)) {
+				return -1;
+			}
+			char c = at.node.element;
+			while (matched > 0 && s.charAt(matched) != c) {
+				matched = fallback[matched - 1];
+			}
+			if (s.charAt(matched) == c) {
+				matched++;
+				if (matched == length) {
+					return at.pos - length + 1;
+				}
+			}
+			// the next match can't start before at.pos + 1 - matched
+			if (this.size - at.pos - 1 < length - matched || at.pos + 1 - matched >= to) {
+				return -1;
+			}
+			at.node = at.node.successor();
+			at.pos++;
+		}
+	}
+
+	/**
+	 * Searches for matches starting in one subtree for parallelFind. The left
+	 * subtree and this node are searched here while the right subtree is
+	 * forked, down to subtrees smaller than threshold, which are searched
+	 * sequentially. found holds the leftmost match any task has seen, and
+	 * tasks that start after it don't search at all.
+	 */
+	private class FindTask extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final String s;
+		private final int[] fallback;
+		private final int from;
+		private final AtomicInteger found;
+		private final int threshold;
+		private final Node node;
+		private final int start;
+		private final int size;
+
+		/**
+		 * @param node
+		 *            root of the subtree to search
+		 * @param start
+		 *            position of the first node in that subtree
+		 * @param size
+		 *            number of nodes in that subtree
+		 */
+		FindTask(String s, int[] fallback, int from, AtomicInteger found, int threshold, Node node, int start,
+				int size) {
+			this.s = s;
+			this.fallback = fallback;
+			this.from = from;
+			this.found = found;
+			this.threshold = threshold;
+			this.node = node;
+			this.start = start;
+			this.size = size;
+		}
+
+		private FindTask subtree(Node n, int subtreeStart, int subtreeSize) {
+			return new FindTask(this.s, this.fallback, this.from, this.found, this.threshold, n, subtreeStart,
+					subtreeSize);
+		}
+
+		@Override
+		protected Integer compute() {
+			int low = Math.max(this.start, this.from);
+			int high = this.start + this.size;
+			// a match has to start with a character of this subtree
+			if (low >= high || low >= this.found.get()
+					|| (this.node.bloom & Node.bit(this.s.charAt(0))) == 0) {
+				return -1;
+			}
+			if (this.size < this.threshold) {
+				return this.report(EditTree.this.find(this.s, this.fallback, low, high));
+			}
+			int mid = this.start + this.node.rank;
+			FindTask right = this.subtree(this.node.right, mid + 1, this.size - this.node.rank - 1);
+			right.fork();
+			int result = this.subtree(this.node.left, this.start, this.node.rank).compute();
+			if (result < 0 && mid >= this.from && mid < this.found.get()) {
+				result = this.report(EditTree.this.find(this.s, this.fallback, mid, mid + 1));
+			}
+			if (result >= 0) {
+				// everything in the right subtree comes after this match
+				right.cancel(false);
+				return result;
+			}
+			return right.join();
+		}
+
+		private int report(int match) {
+			if (match >= 0) {
+				this.found.accumulateAndGet(match, Math::min);
+			}
+			return match;
+		}
+	}
+
+	/**
+	 * A node along with its position in the tree, for find.
+	 */
+	private static class SearchPoint {
+		Node node;
+		int pos;
+
+		SearchPoint(Node node, int pos) {
+			this.node = node;
+			this.pos = pos;
+		}
+
+		/**
+		 * Moves to the next node after this one whose element has a bit in
+		 * bits, skipping subtrees whose bloom has none of them. The position
+		 * is kept up to date with ranks alone: a node's subtree starts at its
+		 * position minus its rank.
+		 * 
+		 * @param bits
+		 * @return false (without moving) if there is no such node
+		 */
+		boolean skipTo(long bits) {
+			Node c = this.node;
+			int p = this.pos;
+			// climb until the next candidate is an ancestor or lies in the
+			// right subtree of an ancestor we came up to from the left
+			if ((c.right.bloom & bits) == 0) {
+				while (true) {
+					Node parent = c.parent;
+					if (parent == NULL_NODE) {
+						return false;
+					}
+					if (parent.left == c) {
+						p = p - c.rank + parent.rank;
+						c = parent;
+						if ((Node.bit(c.element) & bits) != 0) {
+							this.node = c;
+							this.pos = p;
+							return true;
+						}
+						if ((c.right.bloom & bits) != 0) {
+							break;
+						}
+					} else {
+						p = p - c.rank - 1;
+						c = parent;
+					}
+				}
+			}
+			// then take the leftmost matching node of that right subtree
+			c = c.right;
+			p = p + 1 + c.rank;
+			while (true) {
+				if ((c.left.bloom & bits) != 0) {
+					p = p - c.rank + c.left.rank;
+					c = c.left;
+				} else if ((Node.bit(c.element) & bits) != 0) {
+					this.node = c;
+					this.pos = p;
+					return true;
+				} else {
+					p = p + 1 + c.right.rank;
+					c = c.right;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return for each prefix of s, the length of the longest proper prefix of
+	 *         s that is also a suffix of it
+	 */
+	private static int[] failureTable(String s) {
+		int[] table = new int[s.length()];
+		int k = 0;
+		for (int i = 1; i < s.length(); i++) {
+			while (k > 0 && s.charAt(i) != s.charAt(k)) {
+				k = table[k - 1];
+			}
+			if (s.charAt(i) == s.charAt(k)) {
+				k++;
+			}
+			table[i] = k;
+		}
+		return table;
+	}
+
+	/**
+	 * Records that this tree was edited: stale cursors and the finger notice
+	 * from modCount, and a window showing the tree gets repainted.
+	 */
+	void modified() {
+		this.modCount++;
+		this.treeChanged();
+	}
+
+	/**
+	 * Points tail back at the rightmost node after an edit that may have
+	 * removed it.
+	 */
+	void resetTail() {
+		Node current = this.root;
+		while (current != NULL_NODE && current.right != NULL_NODE) {
+			current = current.right;
+		}
+		this.tail = current;
+	}
+
+	/**
+	 * @return A displayable view of the root of this tree, for the GUI.
+	 */
+	@Override
+	public AbstractDisplayableNode getRoot() {
 		if (this.root == NULL_NODE) {
 			return null;
 		}
-		return this.root;
+		return new DisplayableNodeWrapper(this.root);
 	}
 
 	public int slowHeight() {
@@ -317,6 +1013,6 @@ public class EditTree extends AbstractDisplayableBinaryTree{
 	}
 
 	public int slowSize() {
-		return this.root.size();
+		return this.root.slowSize();
 	}
 }
@@ -0,0 +1,248 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Test cases for Milestone 2: deleting, and everything that has to stay
+ * consistent once the tree can shrink as well as grow.
+ *
+ */
+public class EditTreeMilestone2Test {
+
+	private static int m2points = 0;
+	private static int m2weight = 1;
+	private static final int MAX_POINTS = 8;
+
+	@Test
+	public void testDeleteLeafAndRoot() {
+		EditTree t = new EditTree();
+		t.add('b');
+		t.add('a', 0);
+		t.add('c');
+		assertEquals('a', t.delete(0));
+		assertEquals("[b0\\, c0=]", t.toDebugString());
+		assertEquals('b', t.delete(0));
+		assertEquals("[c0=]", t.toDebugString());
+		assertEquals('c', t.delete(0));
+		assertEquals("", t.toString());
+		assertEquals(0, t.size());
+		m2points += m2weight;
+	}
+
+	@Test
+	public void testDeleteReplacesWithSuccessor() {
+		EditTree t = new EditTree();
+		t.add('d');
+		t.add('b', 0);
+		t.add('f');
+		t.add('a', 0);
+		t.add('c', 2);
+		t.add('e', 4);
+		t.add('g');
+		assertEquals('d', t.delete(3));
+		assertEquals("[e3=, b1=, a0=, c0=, f0\\, g0=]", t.toDebugString());
+		assertEquals(6, t.size());
+		try {
+			t.delete(6);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		assertEquals(6, t.size());
+		m2points += m2weight;
+	}
+
+	@Test
+	public void testParallelBuildMatchesSequential() {
+		StringBuilder sb = new StringBuilder();
+		for (int k = 0; k < 50000; k++) {
+			sb.append((char) ('a' + k % 26));
+		}
+		String s = sb.toString();
+		EditTree sequential = new EditTree(s, Integer.MAX_VALUE);
+		// tiny pieces, so almost every level is forked
+		EditTree parallel = new EditTree(s, 7);
+		assertEquals(sequential.toDebugString(), parallel.toDebugString());
+		assertEquals(s, parallel.toString());
+		assertEquals(s.substring(1, 1001), new EditTree(s.substring(1, 1001), 7).toString());
+		// the threshold belongs to the tree it was given to, and to trees
+		// split off it
+		assertEquals(7, parallel.getParallelThreshold());
+		assertEquals(EditTree.DEFAULT_PARALLEL_THRESHOLD, new EditTree(s).getParallelThreshold());
+		assertEquals(7, new EditTree(s, 7).split(100).getParallelThreshold());
+
+		// parent links and the tail have to be right for editing
+		parallel.add('!');
+		parallel.add('?', 25000);
+		assertEquals('a', parallel.delete(0));
+		assertEquals(s.substring(1, 25000) + "?" + s.substring(25000) + "!", parallel.toString());
+		try {
+			parallel.setParallelThreshold(0);
+			fail("Did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		m2points += m2weight;
+	}
+
+	@Test
+	public void testSizeAfterManyEdits() {
+		EditTree t = new EditTree();
+		StringBuilder expected = new StringBuilder();
+		Random random = new Random(230);
+		for (int k = 0; k < 10000; k++) {
+			char c = (char) ('a' + random.nextInt(26));
+			int pos = random.nextInt(expected.length() + 1);
+			t.add(c, pos);
+			expected.insert(pos, c);
+			if (k % 3 == 0) {
+				pos = random.nextInt(expected.length());
+				assertEquals(expected.charAt(pos), t.delete(pos));
+				expected.deleteCharAt(pos);
+			}
+		}
+		assertEquals(expected.length(), t.size());
+		assertEquals(expected.length(), t.slowSize());
+		assertEquals(expected.toString(), t.toString());
+		assertEquals(t.size(), new EditTree(t).size());
+		m2points += m2weight;
+	}
+
+	@Test
+	public void testConstructFromString() {
+		EditTree t = new EditTree("abcde");
+		assertEquals("abcde", t.toString());
+		assertEquals("[c2=, b1/, a0=, e1/, d0=]", t.toDebugString());
+		assertEquals(5, t.size());
+		assertEquals(0, t.totalRotationCount());
+
+		EditTree empty = new EditTree("");
+		assertEquals("[]", empty.toDebugString());
+		assertEquals(-1, empty.height());
+
+		// the tree should still behave normally after being built
+		t.add('f');
+		t.add('x', 0);
+		assertEquals('c', t.delete(3));
+		assertEquals("xabdef", t.toString());
+		assertEquals(6, t.size());
+		m2points += m2weight;
+	}
+
+	@Test
+	public void testConstructLarge() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int k = 0; k < 100000; k++) {
+			sb.append((char) ('a' + k % 26));
+		}
+		String s = sb.toString();
+		EditTree fromString = new EditTree(s);
+		assertEquals(16, fromString.height());
+		assertEquals(s, fromString.toString());
+		assertEquals(0, fromString.totalRotationCount());
+		EditTree fromArray = new EditTree(s.toCharArray());
+		assertEquals(fromString.toDebugString(), fromArray.toDebugString());
+		EditTree fromReader = new EditTree(new StringReader(s));
+		assertEquals(fromString.toDebugString(), fromReader.toDebugString());
+		assertEquals(s.length(), fromReader.size());
+		m2points += m2weight;
+	}
+
+	@Test
+	public void testGetRange() {
+		EditTree t = new EditTree();
+		String s = "the quick brown fox jumps over the lazy dog";
+		for (int k = 0; k < s.length(); k++) {
+			t.add(s.charAt(k), k / 2);
+		}
+		String expected = t.toString();
+		for (int pos = 0; pos <= expected.length(); pos++) {
+			for (int length = 0; pos + length <= expected.length(); length++) {
+				assertEquals(expected.substring(pos, pos + length), t.get(pos, length));
+			}
+		}
+
+		char[] dest = new char[6];
+		dest[0] = '[';
+		dest[5] = ']';
+		t.get(3, 4, dest, 1);
+		assertEquals("[" + expected.substring(3, 7) + "]", new String(dest));
+
+		CharBuffer buffer = CharBuffer.allocate(10);
+		buffer.put('>');
+		t.get(0, 5, buffer);
+		assertEquals(6, buffer.position());
+		buffer.flip();
+		assertEquals(">" + expected.substring(0, 5), buffer.toString());
+
+		try {
+			t.get(40, 4);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			t.get(-1, 2);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		// pos + length would overflow to a negative number
+		try {
+			t.get(1, Integer.MAX_VALUE, dest, 0);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			t.get(1, Integer.MAX_VALUE);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			t.get(1, Integer.MAX_VALUE, buffer);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		m2points += m2weight;
+	}
+
+	@Test
+	public void testNearbyEditsMatchString() {
+		// edits that wander back and forth like typing does, so most lookups
+		// start from the last node touched rather than from the root
+		EditTree t = new EditTree();
+		StringBuilder expected = new StringBuilder();
+		Random random = new Random(230);
+		int pos = 0;
+		for (int k = 0; k < 20000; k++) {
+			pos = Math.max(0, Math.min(expected.length(), pos + random.nextInt(21) - 10));
+			if (random.nextInt(3) > 0 || pos == expected.length()) {
+				char ch = (char) ('a' + random.nextInt(26));
+				t.add(ch, pos);
+				expected.insert(pos, ch);
+			} else {
+				assertEquals(expected.charAt(pos), t.get(pos));
+				assertEquals(expected.charAt(pos), t.delete(pos));
+				expected.deleteCharAt(pos);
+			}
+		}
+		assertEquals(expected.toString(), t.toString());
+		assertEquals(t.slowHeight(), t.height());
+		assertEquals(expected.substring(100, 200), t.get(100, 100));
+		m2points += m2weight;
+	}
+
+	@AfterClass
+	public static void printSummary() {
+		System.out.print("\n ===============     ");
+		System.out.print("Total points: ");
+		System.out.print(m2points + "/" + MAX_POINTS);
+		System.out.println("     ===============");
+	}
+
+}
@@ -0,0 +1,220 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Test cases for Milestone 3: split, concatenate and everything built on top
+ * of them.
+ *
+ */
+public class EditTreeMilestone3Test {
+
+	private static int m3points = 0;
+	private static int m3weight = 1;
+	private static final int MAX_POINTS = 7;
+
+	private static String alphabet(int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int k = 0; k < length; k++) {
+			sb.append((char) ('a' + k % 26));
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testSplitEverywhere() {
+		String s = alphabet(40);
+		for (int pos = 0; pos <= s.length(); pos++) {
+			EditTree t = new EditTree();
+			for (int k = 0; k < s.length(); k++) {
+				t.add(s.charAt(k));
+			}
+			EditTree t2 = t.split(pos);
+			assertEquals(s.substring(0, pos), t.toString());
+			assertEquals(s.substring(pos), t2.toString());
+			assertEquals(pos, t.size());
+			assertEquals(s.length() - pos, t2.size());
+			// 40 nodes can't make an AVL tree taller than 6
+			assertTrue(t.height() <= 6);
+			assertTrue(t2.height() <= 6);
+		}
+		m3points += m3weight;
+	}
+
+	@Test
+	public void testConcatenate() {
+		EditTree t1 = new EditTree("abc");
+		EditTree t2 = new EditTree(alphabet(100));
+		t1.concatenate(t2);
+		assertEquals("abc" + alphabet(100), t1.toString());
+		assertEquals(103, t1.size());
+		assertEquals("", t2.toString());
+		assertEquals(0, t2.size());
+		assertTrue(t1.height() <= 7);
+
+		EditTree empty = new EditTree();
+		empty.concatenate(t1);
+		assertEquals("abc" + alphabet(100), empty.toString());
+		empty.add('!');
+		assertEquals('!', empty.get(103));
+		try {
+			empty.concatenate(empty);
+			fail("Did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		m3points += m3weight;
+	}
+
+	@Test
+	public void testDeleteRange() {
+		String s = alphabet(1000);
+		EditTree t = new EditTree(s);
+		EditTree deleted = t.delete(100, 500);
+		assertEquals(s.substring(100, 600), deleted.toString());
+		assertEquals(s.substring(0, 100) + s.substring(600), t.toString());
+		deleted = t.delete(400, 100);
+		assertEquals(s.substring(900), deleted.toString());
+		assertEquals(400, t.size());
+		try {
+			t.delete(300, 101);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			t.delete(1, Integer.MAX_VALUE);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		assertEquals(400, t.size());
+		m3points += m3weight;
+	}
+
+	@Test
+	public void testInsertString() {
+		String s = alphabet(1000);
+		EditTree t = new EditTree(s);
+		t.insert(300, "HELLO");
+		assertEquals(s.substring(0, 300) + "HELLO" + s.substring(300), t.toString());
+		t.insert(0, "<");
+		t.insert(t.size(), ">");
+		t.insert(500, "");
+		assertEquals("<" + s.substring(0, 300) + "HELLO" + s.substring(300) + ">", t.toString());
+		assertEquals(t.slowHeight(), t.height());
+		assertEquals(1007, t.size());
+		t.add('!');
+		assertEquals('!', t.get(1007));
+
+		EditTree empty = new EditTree();
+		empty.insert(0, new StringBuilder("abc"));
+		assertEquals("abc", empty.toString());
+		try {
+			empty.insert(4, "x");
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+
+		// pasting a big block only rebalances along the join paths
+		t = new EditTree(alphabet(1000000));
+		int rotations = t.totalRotationCount();
+		t.insert(123456, alphabet(100000));
+		assertEquals(1100000, t.size());
+		assertEquals(alphabet(100000).substring(0, 50), t.get(123456, 50));
+		assertTrue(t.totalRotationCount() - rotations < 4 * 21);
+		m3points += m3weight;
+	}
+
+	@Test
+	public void testSplitIsLogarithmic() {
+		EditTree t = new EditTree(alphabet(1000000));
+		int rotations = t.totalRotationCount();
+		for (int k = 0; k < 1000; k++) {
+			int pos = (k * 7919) % t.size();
+			EditTree t2 = t.split(pos);
+			t.concatenate(t2);
+		}
+		assertEquals(alphabet(1000000), t.toString());
+		// each split and concatenate only rotates along a path or two
+		assertTrue(t.totalRotationCount() - rotations < 1000 * 4 * 21);
+		m3points += m3weight;
+	}
+
+	@Test
+	public void testFind() {
+		EditTree t = new EditTree("abracadabra");
+		assertEquals(0, t.find("abra"));
+		assertEquals(7, t.find("abra", 1));
+		assertEquals(3, t.find("acad"));
+		assertEquals(-1, t.find("abrax"));
+		assertEquals(-1, t.find("abra", 8));
+		assertEquals(10, t.find("a", 10));
+		assertEquals(4, t.find("", 4));
+		assertEquals(-1, t.find("abracadabraa"));
+
+		// the text is never copied, and a failed search stops early
+		String s = alphabet(100000) + "aab";
+		t = new EditTree(s);
+		assertEquals(s.indexOf("zaab"), t.find("zaab"));
+		assertEquals(s.indexOf("xyzab", 50000), t.find("xyzab", 50000));
+		assertEquals(-1, t.find("zz"));
+		for (int pos = 0; pos < 60; pos++) {
+			assertEquals(s.indexOf("cdef", pos), t.find("cdef", pos));
+		}
+		assertEquals(-1, t.find("ab!"));
+
+		// a rare first character lets find skip most of the tree
+		t = new EditTree();
+		for (int k = 0; k < 50000; k++) {
+			t.add('x');
+		}
+		t.add('q', 31000);
+		t.add('q', 100);
+		t.add('r', 31002);
+		assertEquals(31001, t.find("qr"));
+		assertEquals(100, t.find("qx"));
+		t.delete(31001);
+		assertEquals(-1, t.find("qr"));
+		t.delete(100);
+		assertEquals(-1, t.find("q"));
+		m3points += m3weight;
+	}
+
+	@Test
+	public void testParallelFind() {
+		Random random = new Random(230);
+		StringBuilder sb = new StringBuilder();
+		for (int k = 0; k < 20000; k++) {
+			sb.append((char) ('a' + random.nextInt(4)));
+		}
+		String s = sb.toString();
+		EditTree t = new EditTree(s);
+		// small chunks, so matches often straddle a chunk border
+		t.setParallelThreshold(16);
+		String[] patterns = { "abcd", "dddddd", "abcabcab", "a", "cdcdcdcdcd", "x", "" };
+		for (String pattern : patterns) {
+			for (int pos = -1; pos < s.length() + 2; pos += 1237) {
+				assertEquals(s.indexOf(pattern, pos), t.parallelFind(pattern, pos));
+			}
+		}
+		// one match, right at the end
+		t.add('x', 19990);
+		assertEquals(19989, t.parallelFind(s.charAt(19989) + "x", 0));
+		assertEquals(-1, t.parallelFind("xx", 0));
+		m3points += m3weight;
+	}
+
+	@AfterClass
+	public static void printSummary() {
+		System.out.print("\n ===============     ");
+		System.out.print("Total points: ");
+		System.out.print(m3points + "/" + MAX_POINTS);
+		System.out.println("     ===============");
+	}
+
+}
@@ -1,10 +1,10 @@
 package editortrees;
 
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.IntSupplier;
 
-import gui.AbstractDisplayableNode;
-
-public class Node extends AbstractDisplayableNode{
+public class Node {
 
 	enum Code {
 		SAME, LEFT, RIGHT;
@@ -33,7 +33,9 @@ public class Node extends AbstractDisplayableNode{
 	Node left, right, parent; // subtrees and parent
 	int rank; // inorder position of this node within its own subtree.
 	Code balance;
-	AbstractDisplayableNode wrapper;
+	// one bit (see bit()) for every character in this subtree, so find can
+	// skip subtrees that can't hold the character it is looking for
+	long bloom;
 
 	public Node() {
 		this.balance = Code.SAME;
@@ -41,11 +43,11 @@ public class Node extends AbstractDisplayableNode{
 
 	public Node(char element) {
 		this.element = element;
+		this.bloom = bit(element);
 		this.balance = Code.SAME;
 		this.left = EditTree.NULL_NODE;
 		this.right = EditTree.NULL_NODE;
 		this.parent = EditTree.NULL_NODE;
-//		this.wrapper = new DisplayableNodeWrapper(this);
 	}
 
 	class Rank implements IntSupplier {
@@ -58,6 +60,34 @@ public class Node extends AbstractDisplayableNode{
 
 	}
 
+	/**
+	 * @param c
+	 * @return the bit that stands for c in a bloom. Characters 64 apart share
+	 *         a bit, which only costs find a little pruning.
+	 */
+	static long bit(char c) {
+		return 1L << (c & 63);
+	}
+
+	/**
+	 * Recomputes the bloom of this node from its children.
+	 */
+	void updateBloom() {
+		this.bloom = this.left.bloom | this.right.bloom | bit(this.element);
+	}
+
+	/**
+	 * Adds this node's bloom to each ancestor's bloom after this node is
+	 * linked into the tree. Stops at the first ancestor that already has
+	 * every bit, because all of that ancestor's ancestors have them too.
+	 */
+	void spreadBloom() {
+		long bits = this.bloom;
+		for (Node p = this.parent; p != EditTree.NULL_NODE && (p.bloom & bits) != bits; p = p.parent) {
+			p.bloom |= bits;
+		}
+	}
+
 	// For the following methods, you should fill in the details so that they
 	// work correctly
 	public int height() {
@@ -74,48 +104,18 @@ public class Node extends AbstractDisplayableNode{
 	}
 
 	/**
-	 * Recursively finds the "size" of the tree, ie. the number of nodes in the
-	 * tree
+	 * Finds the "size" of the tree, ie. the number of nodes in the tree. Since
+	 * rank already counts the left subtree of each node, only the right spine
+	 * has to be walked, so this is O(log N) instead of a full traversal.
 	 *
 	 * @return size of tree starting from "this"
 	 */
 	public int size() {
-		if (this == EditTree.NULL_NODE) {
-			return 0;
-		}
-		return 1 + this.left.size() + this.right.size();
-	}
-
-	/**
-	 * Adds a new node to the tree at the far right
-	 *
-	 * @param c
-	 *            element for new Node
-	 * @param parent1
-	 *            parent of the new Node
-	 * @param tree
-	 *            editor tree from which this method was initially called from;
-	 *            used in other function calls
-	 * @return the new Node created
-	 */
-	public Node add(char c, Node parent1, EditTree tree) {
-		//
-		if (this == EditTree.NULL_NODE) {
-			Node n = new Node(c);
-			n.parent = parent1;
-			parent1.right = n;
-			n.rank = 0;
-			n.checkRotate(false, tree);
-
-			return n;
-		} else if (this.right == EditTree.NULL_NODE) {
-			this.right = this.right.add(c, this, tree);
-
-		} else {
-			this.right.add(c, this, tree);
+		int size = 0;
+		for (Node current = this; current != EditTree.NULL_NODE; current = current.right) {
+			size += current.rank + 1;
 		}
-		return this;
-
+		return size;
 	}
 
 	public Node get(int pos) throws IndexOutOfBoundsException {
@@ -131,34 +131,209 @@ public class Node extends AbstractDisplayableNode{
 		}
 	}
 
-	public void stringify(StringBuilder sb) {
-		if (this == EditTree.NULL_NODE) {
-			return;
+	/**
+	 * Finds the node at position target, given that this node is at position
+	 * pos, without starting over from the root. Climbs only to the nearest
+	 * ancestor whose subtree on the near side spans target and then descends
+	 * from there, so the cost is O(log d) in the distance d = |target - pos|.
+	 * The positions of ancestors come from ranks alone, like in find.
+	 *
+	 * @param pos
+	 *            position of this node in the tree
+	 * @param target
+	 *            position of the node to find; must be in the tree
+	 * @return the node at target
+	 */
+	Node nodeAt(int pos, int target) {
+		Node c = this;
+		int p = pos;
+		if (target > p) {
+			// Everything between c and the next ancestor to its right is in
+			// c's right subtree, so move ancestor by ancestor until target
+			// comes before the next one.
+			while (true) {
+				Node a = c;
+				int q = p;
+				while (a.parent != EditTree.NULL_NODE && a.parent.right == a) {
+					q -= a.rank + 1;
+					a = a.parent;
+				}
+				if (a.parent == EditTree.NULL_NODE) {
+					break;
+				}
+				q += a.parent.rank - a.rank;
+				a = a.parent;
+				if (target < q) {
+					break;
+				}
+				c = a;
+				p = q;
+				if (target == p) {
+					return c;
+				}
+			}
+			return c.right.get(target - p - 1);
 		}
+		// mirror image, with the next ancestor to the left
+		while (target < p) {
+			Node a = c;
+			int q = p;
+			while (a.parent != EditTree.NULL_NODE && a.parent.left == a) {
+				q += a.parent.rank - a.rank;
+				a = a.parent;
+			}
+			if (a.parent == EditTree.NULL_NODE) {
+				break;
+			}
+			q -= a.rank + 1;
+			a = a.parent;
+			if (target > q) {
+				break;
+			}
+			c = a;
+			p = q;
+		}
+		if (target == p) {
+			return c;
+		}
+		return c.left.get(target - (p - c.rank));
+	}
 
-		this.left.stringify(sb);
-		sb.append(this.element);
-		this.right.stringify(sb);
+	/**
+	 * Finds the next node in an inorder traversal using the parent links, in
+	 * amortized O(1) time when walking over a whole range.
+	 *
+	 * @return the inorder successor of this node, or NULL_NODE if this is the
+	 *         last node in the tree
+	 */
+	public Node successor() {
+		if (this.right != EditTree.NULL_NODE) {
+			Node current = this.right;
+			while (current.left != EditTree.NULL_NODE) {
+				current = current.left;
+			}
+			return current;
+		}
+		Node c = this;
+		Node p = this.parent;
+		while (p != EditTree.NULL_NODE && p.right == c) {
+			c = p;
+			p = p.parent;
+		}
+		return p;
+	}
+
+	/**
+	 * Mirror image of successor.
+	 *
+	 * @return the inorder predecessor of this node, or NULL_NODE if this is
+	 *         the first node in the tree
+	 */
+	public Node predecessor() {
+		if (this.left != EditTree.NULL_NODE) {
+			Node current = this.left;
+			while (current.right != EditTree.NULL_NODE) {
+				current = current.right;
+			}
+			return current;
+		}
+		Node c = this;
+		Node p = this.parent;
+		while (p != EditTree.NULL_NODE && p.left == c) {
+			c = p;
+			p = p.parent;
+		}
+		return p;
 	}
 
+	/**
+	 * Copies the elements of this subtree, inorder, into dest starting at
+	 * destPos. Walks the parent links instead of recursing, so it works on
+	 * trees of any size.
+	 * 
+	 * @param dest
+	 * @param destPos
+	 * @return the position in dest just past the last element copied
+	 */
+	public int stringify(char[] dest, int destPos) {
+		if (this == EditTree.NULL_NODE) {
+			return destPos;
+		}
+		Node current = this;
+		while (current.left != EditTree.NULL_NODE) {
+			current = current.left;
+		}
+		while (true) {
+			dest[destPos++] = current.element;
+			if (current.right != EditTree.NULL_NODE) {
+				current = current.right;
+				while (current.left != EditTree.NULL_NODE) {
+					current = current.left;
+				}
+				continue;
+			}
+			// climb out of every subtree we've finished, stopping at this
+			// node since its parent isn't part of the subtree
+			while (current != this && current.parent.right == current) {
+				current = current.parent;
+			}
+			if (current == this) {
+				return destPos;
+			}
+			current = current.parent;
+		}
+	}
+
+	/**
+	 * Appends the element, rank and balance code of every node in this
+	 * subtree, preorder, each followed by ", ". Like stringify, it follows
+	 * parent links rather than recursing.
+	 * 
+	 * @param sb
+	 */
 	public void stringifyDebug(StringBuilder sb) {
 		if (this == EditTree.NULL_NODE) {
 			return;
 		}
-		sb.append(this.element);
-		sb.append(this.rank);
-		sb.append(this.balance);
-		sb.append(", ");
-		this.left.stringifyDebug(sb);
-		this.right.stringifyDebug(sb);
-
+		Node current = this;
+		while (true) {
+			sb.append(current.element);
+			sb.append(current.rank);
+			sb.append(current.balance);
+			sb.append(", ");
+			if (current.left != EditTree.NULL_NODE) {
+				current = current.left;
+			} else if (current.right != EditTree.NULL_NODE) {
+				current = current.right;
+			} else {
+				// go back up to the closest node whose right subtree hasn't
+				// been visited yet
+				while (current != this && (current.parent.right == current
+						|| current.parent.right == EditTree.NULL_NODE)) {
+					current = current.parent;
+				}
+				if (current == this) {
+					return;
+				}
+				current = current.parent.right;
+			}
+		}
 	}
 
-	public void checkRotate(boolean isLeft, EditTree tree) {
+	/**
+	 * Rebalances after the subtree rooted at this node got one taller,
+	 * walking up until some subtree's height stops changing.
+	 *
+	 * @param isLeft
+	 *            true if this node is the left child of its parent
+	 * @param tree
+	 * @return true if the height of the whole tree went up
+	 */
+	public boolean checkRotate(boolean isLeft, EditTree tree) {
 		Node p = this.parent;
 		Node c = this;
 		if (c == EditTree.NULL_NODE) {
-			return;
+			return false;
 		}
 		while (p != EditTree.NULL_NODE) {
 
@@ -168,10 +343,15 @@ public class Node extends AbstractDisplayableNode{
 				p.setBalace(Code.LEFT);
 			} else if ((p.getBalance() == Code.LEFT && !isLeft) || (p.getBalance() == Code.RIGHT && isLeft)) {
 				p.setBalace(Code.SAME);
-				break;
+				return false;
 			} else {
 				p = p.doRotation(c, tree);
-				break;
+				// After an insertion the rotated subtree is always back to its
+				// old height. Only a join can hand us a balanced c, and then
+				// the subtree is still one taller than before.
+				if (p.getBalance() == Code.SAME) {
+					return false;
+				}
 			}
 			c = p;
 			p = p.parent;
@@ -181,111 +361,204 @@ public class Node extends AbstractDisplayableNode{
 				isLeft = false;
 			}
 		}
-
+		return true;
 	}
 
+	/**
+	 * Single right rotation of this node (which is two levels heavier on the
+	 * left) with its left child b. The new balance codes come straight from
+	 * b's old code, so no heights have to be computed:
+	 * <ul>
+	 * <li>b was LEFT: both end up SAME (the subtree got shorter)</li>
+	 * <li>b was SAME (deletion only): this stays LEFT and b leans RIGHT (the
+	 * height is unchanged)</li>
+	 * </ul>
+	 *
+	 * @param b
+	 *            left child of this node
+	 * @param tree
+	 * @return the new root of this subtree, which is b
+	 */
 	public Node singleRR(Node b, EditTree tree) {
 		tree.rotCount++;
 		Node a = this;
-		Node apar = a.parent;
 		Node bright = b.right;
 
-		if (a.parent == EditTree.NULL_NODE) {
-			b.parent = EditTree.NULL_NODE;
-			tree.setRoot(b);
-		} else {
-			b.parent = apar;
-
-			if (a == apar.left) {
-				apar.left = b;
-			} else {
-				apar.right = b;
-			}
-		}
-
+		a.replaceWith(b, tree);
 		a.left = bright;
 		a.parent = b;
 		b.right = a;
-		bright.parent = a;
+		if (bright != EditTree.NULL_NODE) {
+			bright.parent = a;
+		}
 
 		a.rank = a.rank - (b.rank + 1);
+		a.updateBloom();
+		b.updateBloom();
 
-		int lh = a.left.height();
-		int rh = a.right.height();
-		b.setBalace(Code.SAME);
-		if (lh > rh)
+		if (b.getBalance() == Code.SAME) {
 			a.setBalace(Code.LEFT);
-		else if (lh == rh)
+			b.setBalace(Code.RIGHT);
+		} else {
 			a.setBalace(Code.SAME);
-		else
-			a.setBalace(Code.RIGHT);
-
+			b.setBalace(Code.SAME);
+		}
 		return b;
 	}
 
+	/**
+	 * Single left rotation of this node (which is two levels heavier on the
+	 * right) with its right child b. Mirror image of singleRR.
+	 *
+	 * @param b
+	 *            right child of this node
+	 * @param tree
+	 * @return the new root of this subtree, which is b
+	 */
 	public Node singleLR(Node b, EditTree tree) {
 		tree.rotCount++;
 		Node a = this;
-		Node Apar = a.parent;
 		Node bleft = b.left;
 
-		if (a.parent == EditTree.NULL_NODE) {
-			b.parent = EditTree.NULL_NODE;
-			tree.setRoot(b);
-		} else {
-			b.parent = Apar;
-			if (a == a.parent.left) {
-				Apar.left = b;
-			} else {
-				Apar.right = b;
-			}
-		}
-
+		a.replaceWith(b, tree);
 		a.right = bleft;
 		a.parent = b;
 		b.left = a;
-		bleft.parent = a;
+		if (bleft != EditTree.NULL_NODE) {
+			bleft.parent = a;
+		}
 
 		b.rank = a.rank + b.rank + 1;
+		a.updateBloom();
+		b.updateBloom();
 
-		int lh = a.left.height();
-		int rh = a.right.height();
+		if (b.getBalance() == Code.SAME) {
+			a.setBalace(Code.RIGHT);
+			b.setBalace(Code.LEFT);
+		} else {
+			a.setBalace(Code.SAME);
+			b.setBalace(Code.SAME);
+		}
+		return b;
+	}
 
-		b.setBalace(Code.SAME);
+	/**
+	 * Double right rotation done in one step: this node is two levels heavier
+	 * on the left, its left child b leans right, and b's right child c ends up
+	 * as the root of the subtree. Counts as two rotations.
+	 *
+	 * @param b
+	 *            left child of this node
+	 * @param tree
+	 * @return the new root of this subtree, which is c
+	 */
+	private Node doubleRR(Node b, EditTree tree) {
+		tree.rotCount += 2;
+		Node a = this;
+		Node c = b.right;
+		Node cleft = c.left;
+		Node cright = c.right;
+
+		a.replaceWith(c, tree);
+		b.right = cleft;
+		if (cleft != EditTree.NULL_NODE) {
+			cleft.parent = b;
+		}
+		a.left = cright;
+		if (cright != EditTree.NULL_NODE) {
+			cright.parent = a;
+		}
+		c.left = b;
+		c.right = a;
+		b.parent = c;
+		a.parent = c;
+
+		c.rank = b.rank + c.rank + 1;
+		a.rank = a.rank - (c.rank + 1);
+		a.updateBloom();
+		b.updateBloom();
+		c.updateBloom();
+
+		// whichever side c leaned to keeps its taller subtree
+		a.setBalace(c.getBalance() == Code.LEFT ? Code.RIGHT : Code.SAME);
+		b.setBalace(c.getBalance() == Code.RIGHT ? Code.LEFT : Code.SAME);
+		c.setBalace(Code.SAME);
+		return c;
+	}
 
-		if (lh > rh)
-			a.setBalace(Code.LEFT);
-		else if (lh == rh)
-			a.setBalace(Code.SAME);
-		else
-			a.setBalace(Code.RIGHT);
+	/**
+	 * Double left rotation done in one step. Mirror image of doubleRR.
+	 *
+	 * @param b
+	 *            right child of this node
+	 * @param tree
+	 * @return the new root of this subtree, which is c
+	 */
+	private Node doubleLR(Node b, EditTree tree) {
+		tree.rotCount += 2;
+		Node a = this;
+		Node c = b.left;
+		Node cleft = c.left;
+		Node cright = c.right;
+
+		a.replaceWith(c, tree);
+		a.right = cleft;
+		if (cleft != EditTree.NULL_NODE) {
+			cleft.parent = a;
+		}
+		b.left = cright;
+		if (cright != EditTree.NULL_NODE) {
+			cright.parent = b;
+		}
+		c.left = a;
+		c.right = b;
+		a.parent = c;
+		b.parent = c;
+
+		b.rank = b.rank - (c.rank + 1);
+		c.rank = a.rank + c.rank + 1;
+		a.updateBloom();
+		b.updateBloom();
+		c.updateBloom();
+
+		a.setBalace(c.getBalance() == Code.RIGHT ? Code.LEFT : Code.SAME);
+		b.setBalace(c.getBalance() == Code.LEFT ? Code.RIGHT : Code.SAME);
+		c.setBalace(Code.SAME);
+		return c;
+	}
 
-		return b;
+	/**
+	 * Puts n where this node used to hang from its parent (or makes it the
+	 * root of the tree).
+	 *
+	 * @param n
+	 * @param tree
+	 */
+	private void replaceWith(Node n, EditTree tree) {
+		Node apar = this.parent;
+		n.parent = apar;
+		if (apar == EditTree.NULL_NODE) {
+			tree.root = n;
+		} else if (this == apar.left) {
+			apar.left = n;
+		} else {
+			apar.right = n;
+		}
 	}
 
 	public Node doRotation(Node b, EditTree tree) {
 		// No need to check if caller is a nullnode, checkRotate screens out
 		// that case
-		// Single right rotation
-		if (this.getBalance() == Code.LEFT && b.getBalance() == Code.LEFT) {
+		if (this.getBalance() == Code.LEFT) {
+			if (b.getBalance() == Code.RIGHT) {
+				return this.doubleRR(b, tree);
+			}
 			return this.singleRR(b, tree);
-		} // Double right rotation
-		else if (this.getBalance() == Code.LEFT && b.getBalance() == Code.RIGHT) {
-
-			Node newB = b.singleLR(b.right, tree);
-			Node output = this.singleRR(newB, tree);
-
-			return output;
-		} // Double left rotation
-		else if (this.getBalance() == Code.RIGHT && b.getBalance() == Code.LEFT) {
-			Node newB = b.singleRR(b.left, tree);
-			Node output = this.singleLR(newB, tree);
-
-			return output;
-		} // Single left rotation
-		else {
-			return this.singleLR(b, tree);
 		}
+		if (b.getBalance() == Code.LEFT) {
+			return this.doubleLR(b, tree);
+		}
+		return this.singleLR(b, tree);
 	}
 
 	private void setBalace(Code newBalance) {
@@ -296,39 +569,334 @@ public class Node extends AbstractDisplayableNode{
 		return this.balance;
 	}
 
-	public void add(char c, Node parent1, EditTree tree, int pos) {
-		if (this.left == EditTree.NULL_NODE && this.right == EditTree.NULL_NODE) {
-			if (pos > 1) {
-				throw new IndexOutOfBoundsException();
+	/**
+	 * Adds a new node at the given position within this subtree. Walks down
+	 * with a loop rather than recursing, bumping the rank of every node whose
+	 * left subtree the new node ends up in, and then hands off to checkRotate
+	 * to rebalance on the way back up. The caller is responsible for checking
+	 * pos against the size of the tree.
+	 *
+	 * @param c
+	 *            element for the new Node
+	 * @param tree
+	 *            editor tree this node belongs to
+	 * @param pos
+	 *            position of the new node, relative to this subtree
+	 * @return the new Node created
+	 */
+	public Node add(char c, EditTree tree, int pos) {
+		Node current = this;
+		while (true) {
+			if (pos <= current.rank) {
+				current.rank++;
+				if (current.left == EditTree.NULL_NODE) {
+					Node n = new Node(c);
+					n.parent = current;
+					current.left = n;
+					n.spreadBloom();
+					n.checkRotate(true, tree);
+					return n;
+				}
+				current = current.left;
+			} else {
+				pos -= current.rank + 1;
+				if (current.right == EditTree.NULL_NODE) {
+					Node n = new Node(c);
+					n.parent = current;
+					current.right = n;
+					n.spreadBloom();
+					n.checkRotate(false, tree);
+					return n;
+				}
+				current = current.right;
 			}
 		}
+	}
 
-		if (pos <= this.rank) {
-			if (this.left == EditTree.NULL_NODE) {
-				this.left = new Node(c);
-				this.left.parent = this;
-				this.rank++;
-				this.left.checkRotate(true, tree);
+	/**
+	 * Adds a new node just before this one in inorder, for a Cursor that is
+	 * already sitting on this node. Instead of descending from the root, the
+	 * new node goes at the bottom of this node's left subtree, and the ranks
+	 * of every ancestor that now has it on its left are bumped on the way up.
+	 *
+	 * @param c
+	 *            element for the new Node
+	 * @param tree
+	 *            editor tree this node belongs to
+	 * @return the new Node created
+	 */
+	Node addBefore(char c, EditTree tree) {
+		Node n = new Node(c);
+		boolean isLeft;
+		if (this.left == EditTree.NULL_NODE) {
+			n.parent = this;
+			this.left = n;
+			isLeft = true;
+		} else {
+			Node p = this.left;
+			while (p.right != EditTree.NULL_NODE) {
+				p = p.right;
+			}
+			n.parent = p;
+			p.right = n;
+			isLeft = false;
+		}
+		Node child = n;
+		for (Node p = n.parent; p != EditTree.NULL_NODE; p = p.parent) {
+			if (p.left == child) {
+				p.rank++;
+			}
+			child = p;
+		}
+		n.spreadBloom();
+		n.checkRotate(isLeft, tree);
+		return n;
+	}
 
-			} else {
-				this.rank++;
-				this.left.add(c, this, tree, pos);
+	/**
+	 * Builds a perfectly balanced subtree out of chars[start, end) in O(N)
+	 * time with no rotations. The middle character becomes the root, so the
+	 * left half is never smaller than the right half and the balance codes
+	 * can be worked out from the sizes alone.
+	 *
+	 * @param chars
+	 *            characters to build from
+	 * @param start
+	 *            first position (inclusive)
+	 * @param end
+	 *            last position (exclusive)
+	 * @param parent
+	 *            parent of the root of the new subtree
+	 * @return the root of the new subtree
+	 */
+	static Node build(CharSequence chars, int start, int end, Node parent) {
+		if (start >= end) {
+			return EditTree.NULL_NODE;
+		}
+		int mid = (start + end) >>> 1;
+		Node n = new Node(chars.charAt(mid));
+		n.parent = parent;
+		n.rank = mid - start;
+		n.left = build(chars, start, mid, n);
+		n.right = build(chars, mid + 1, end, n);
+		n.finishBuild(mid - start, end - mid - 1);
+		return n;
+	}
 
+	/**
+	 * Sets the bloom and balance code of a node made by build, once both of
+	 * its subtrees are done.
+	 */
+	private void finishBuild(int leftSize, int rightSize) {
+		this.updateBloom();
+		if (balancedHeight(leftSize) > balancedHeight(rightSize)) {
+			this.balance = Code.LEFT;
+		}
+	}
+
+	/**
+	 * build() on a ForkJoinPool. The two halves of a range never touch each
+	 * other's nodes, so the left half is forked while this thread builds the
+	 * right half. Ranges shorter than threshold are built sequentially. The
+	 * result has exactly the same shape as build() gives.
+	 */
+	static class BuildTask extends RecursiveTask<Node> {
+		private static final long serialVersionUID = 1L;
+
+		private final CharSequence chars;
+		private final int start, end;
+		private final Node parent;
+		private final int threshold;
+
+		BuildTask(CharSequence chars, int start, int end, Node parent, int threshold) {
+			this.chars = chars;
+			this.start = start;
+			this.end = end;
+			this.parent = parent;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected Node compute() {
+			if (this.end - this.start < this.threshold) {
+				return build(this.chars, this.start, this.end, this.parent);
 			}
+			int mid = (this.start + this.end) >>> 1;
+			Node n = new Node(this.chars.charAt(mid));
+			n.parent = this.parent;
+			n.rank = mid - this.start;
+			BuildTask left = new BuildTask(this.chars, this.start, mid, n, this.threshold);
+			left.fork();
+			n.right = new BuildTask(this.chars, mid + 1, this.end, n, this.threshold).compute();
+			n.left = left.join();
+			n.finishBuild(mid - this.start, this.end - mid - 1);
+			return n;
+		}
+	}
 
-		} else if (pos > this.rank) {
-			if (this.right == EditTree.NULL_NODE) {
-				this.right = new Node(c);
-				this.right.parent = this;
-				this.right.checkRotate(false, tree);
-			} else {
-				this.right.add(c, this, tree, pos - (this.rank + 1));
+	/**
+	 * stringify() on a ForkJoinPool. Ranks say exactly where in dest each
+	 * subtree's characters go, so the two subtrees of a node are written at
+	 * the same time without any copying afterwards. Subtrees smaller than
+	 * threshold are written sequentially.
+	 */
+	static class StringifyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Node node;
+		private final int size;
+		private final char[] dest;
+		private final int destPos;
+		private final int threshold;
+
+		/**
+		 * @param node
+		 *            root of the subtree to write
+		 * @param size
+		 *            number of nodes in that subtree
+		 * @param dest
+		 * @param destPos
+		 *            where in dest the subtree's first character goes
+		 * @param threshold
+		 */
+		StringifyTask(Node node, int size, char[] dest, int destPos, int threshold) {
+			this.node = node;
+			this.size = size;
+			this.dest = dest;
+			this.destPos = destPos;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.size < this.threshold) {
+				this.node.stringify(this.dest, this.destPos);
+				return;
 			}
+			Node n = this.node;
+			this.dest[this.destPos + n.rank] = n.element;
+			invokeAll(new StringifyTask(n.left, n.rank, this.dest, this.destPos, this.threshold),
+					new StringifyTask(n.right, this.size - n.rank - 1, this.dest, this.destPos + n.rank + 1,
+							this.threshold));
 		}
+	}
 
+	/**
+	 * @param size
+	 * @return the height of a subtree of the given size made by build()
+	 */
+	private static int balancedHeight(int size) {
+		return 31 - Integer.numberOfLeadingZeros(size);
 	}
 
+	/**
+	 * A subtree root together with its height, which join and split have to
+	 * carry along since nodes only store balance codes.
+	 */
+	static class Subtree {
+		final Node root;
+		final int height;
 
+		Subtree(Node root, int height) {
+			this.root = root;
+			this.height = height;
+		}
+	}
+
+	/**
+	 * Joins l, x and r (in that inorder order) into one tree in time
+	 * proportional to the difference in their heights. x is hung off the
+	 * spine of the taller tree at the point where the heights match up, and
+	 * the usual insertion rebalancing takes it from there.
+	 *
+	 * @param l
+	 *            root of the left tree
+	 * @param hl
+	 *            height of the left tree
+	 * @param sl
+	 *            size of the left tree
+	 * @param x
+	 *            node that goes between l and r; its old links are ignored
+	 * @param r
+	 *            root of the right tree
+	 * @param hr
+	 *            height of the right tree
+	 * @param tree
+	 *            editor tree whose rotations are being counted. Its root is
+	 *            used as scratch space while joining.
+	 * @return the joined tree
+	 */
+	static Subtree join(Node l, int hl, int sl, Node x, Node r, int hr, EditTree tree) {
+		if (l != EditTree.NULL_NODE) {
+			l.parent = EditTree.NULL_NODE;
+		}
+		if (r != EditTree.NULL_NODE) {
+			r.parent = EditTree.NULL_NODE;
+		}
+		if (Math.abs(hl - hr) <= 1) {
+			x.link(l, r, sl, EditTree.NULL_NODE);
+			x.balance = (hl == hr) ? Code.SAME : (hl > hr) ? Code.LEFT : Code.RIGHT;
+			return new Subtree(x, Math.max(hl, hr) + 1);
+		}
+
+		// rotations at the top of the joined tree update tree.root, which is
+		// how the new root is found afterwards
+		boolean grew;
+		if (hl > hr) {
+			tree.root = l;
+			Node p = EditTree.NULL_NODE;
+			Node c = l;
+			int h = hl;
+			int s = sl;
+			while (h > hr + 1) {
+				h -= (c.balance == Code.LEFT) ? 2 : 1;
+				s -= c.rank + 1;
+				p = c;
+				c = c.right;
+			}
+			x.link(c, r, s, p);
+			x.balance = (h > hr) ? Code.LEFT : Code.SAME;
+			p.right = x;
+			x.spreadBloom();
+			grew = x.checkRotate(false, tree);
+		} else {
+			tree.root = r;
+			Node p = EditTree.NULL_NODE;
+			Node c = r;
+			int h = hr;
+			while (h > hl + 1) {
+				// x and all of l land in c's left subtree
+				c.rank += sl + 1;
+				h -= (c.balance == Code.RIGHT) ? 2 : 1;
+				p = c;
+				c = c.left;
+			}
+			x.link(l, c, sl, p);
+			x.balance = (h > hl) ? Code.RIGHT : Code.SAME;
+			p.left = x;
+			x.spreadBloom();
+			grew = x.checkRotate(true, tree);
+		}
+		return new Subtree(tree.root, Math.max(hl, hr) + (grew ? 1 : 0));
+	}
+
+	/**
+	 * Makes l and r the children of this node, and this node a child of
+	 * parent.
+	 */
+	private void link(Node l, Node r, int rank, Node parent) {
+		this.left = l;
+		this.right = r;
+		this.rank = rank;
+		this.parent = parent;
+		if (l != EditTree.NULL_NODE) {
+			l.parent = this;
+		}
+		if (r != EditTree.NULL_NODE) {
+			r.parent = this;
+		}
+		this.updateBloom();
+	}
 
 	public Node copy(Node oldNode) {
 		if (oldNode == EditTree.NULL_NODE) {
@@ -337,6 +905,7 @@ public class Node extends AbstractDisplayableNode{
 		Node toReturn = new Node(oldNode.element);
 		toReturn.rank = oldNode.rank;
 		toReturn.balance = oldNode.balance;
+		toReturn.bloom = oldNode.bloom;
 		toReturn.left = toReturn.copy(oldNode.left);
 		toReturn.left.parent = toReturn;
 		toReturn.right = toReturn.copy(oldNode.right);
@@ -344,88 +913,137 @@ public class Node extends AbstractDisplayableNode{
 		return toReturn;
 	}
 
+	/**
+	 * Deletes the node at the given position within this subtree. The caller
+	 * is responsible for checking pos against the size of the tree, so the
+	 * descent always lands on a real node.
+	 *
+	 * @param pos
+	 *            position of the node to delete, relative to this subtree
+	 * @param tree
+	 *            editor tree this node belongs to
+	 * @return the element that was deleted
+	 */
 	public char delete(int pos, EditTree tree) {
-		
-		if (this == EditTree.NULL_NODE) {
-			throw new IndexOutOfBoundsException();
+		Node current = this;
+		while (current.rank != pos) {
+			if (pos < current.rank) {
+				current = current.left;
+			} else {
+				pos -= current.rank + 1;
+				current = current.right;
+			}
+		}
+		char deleted = current.element;
+		current.remove(tree);
+		return deleted;
+	}
+
+	/**
+	 * Removes this node's element from the tree. A node with two children is
+	 * replaced by its in-order successor (the tests expect the successor, not
+	 * the predecessor), so the node that is physically unlinked never has more
+	 * than one child.
+	 *
+	 * @param tree
+	 * @return the node that holds the element that came after this one, or
+	 *         NULL_NODE if this was the last one. That is this node itself
+	 *         when it had two children.
+	 */
+	Node remove(EditTree tree) {
+		Node target = this;
+		Node next;
+		if (this.left != EditTree.NULL_NODE && this.right != EditTree.NULL_NODE) {
+			target = this.right;
+			while (target.left != EditTree.NULL_NODE) {
+				target = target.left;
+			}
+			this.element = target.element;
+			next = this;
+		} else {
+			// rotations keep nodes in inorder, so the successor is still the
+			// successor once this node is gone
+			next = this.successor();
 		}
-		if (this.left == EditTree.NULL_NODE && this.right == EditTree.NULL_NODE) {
-			if (pos > 1) {
-				throw new IndexOutOfBoundsException();
+		target.unlink(tree);
+		return next;
+	}
+
+	/**
+	 * Splices this node (which has at most one child) out of the tree, fixes
+	 * the ranks of every ancestor that had it in its left subtree, and then
+	 * rebalances from the parent upwards. Blooms can't just have a bit
+	 * cleared, since another character may share it, so every bloom on the
+	 * path is recomputed. That also covers the ancestor that remove() copied
+	 * the successor's element into.
+	 *
+	 * @param tree
+	 */
+	private void unlink(EditTree tree) {
+		Node c = this;
+		Node p = this.parent;
+		while (p != EditTree.NULL_NODE) {
+			if (p.left == c) {
+				p.rank--;
 			}
+			c = p;
+			p = p.parent;
 		}
-		if (pos > this.rank) {
-			return this.right.delete(pos - (this.rank + 1), tree);
-		} else if (pos < this.rank) {
-			this.rank--;
-			return this.left.delete(pos, tree);
+
+		Node child = (this.left != EditTree.NULL_NODE) ? this.left : this.right;
+		p = this.parent;
+		if (child != EditTree.NULL_NODE) {
+			child.parent = p;
+		}
+		if (p == EditTree.NULL_NODE) {
+			tree.root = child;
+			return;
+		}
+		boolean isLeft = p.left == this;
+		if (isLeft) {
+			p.left = child;
 		} else {
-			if (this.parent.left == this) {
-				if (this.left == EditTree.NULL_NODE && this.right == EditTree.NULL_NODE) {
-					this.parent.left = EditTree.NULL_NODE;
-					this.parent.right.checkRotate(false, tree);
-
-				} else if (this.left == EditTree.NULL_NODE && this.right != EditTree.NULL_NODE) {
-					this.parent.left = this.right;
-					this.right.parent = this.parent.left;
-					this.parent.left.checkRotate(true, tree);
-				} else if (this.left != EditTree.NULL_NODE && this.right == EditTree.NULL_NODE) {
-					this.parent.left = this.left;
-					this.left.parent = this.parent.left;
-					this.parent.left.checkRotate(true, tree);
-				}else{
-				Node current = this.right;
-				if (current.left != EditTree.NULL_NODE) {
-					while (current.left != EditTree.NULL_NODE) {
-						current = current.left;
-					}
-				}
-				char toReturn = this.element;
-				this.element = current.element;
-				current.element = toReturn;
-				return this.delete(this.rank + 1, tree);
-				}
+			p.right = child;
+		}
+		for (Node n = p; n != EditTree.NULL_NODE; n = n.parent) {
+			n.updateBloom();
+		}
+		p.checkRotateDelete(isLeft, tree);
+	}
+
+	/**
+	 * The deletion counterpart of checkRotate. Called on the parent whose left
+	 * (isLeft) or right subtree just got shorter, and walks up until the
+	 * height of some subtree stops changing.
+	 *
+	 * @param isLeft
+	 *            true if the left subtree of this node shrank
+	 * @param tree
+	 */
+	public void checkRotateDelete(boolean isLeft, EditTree tree) {
+		Node p = this;
+		while (p != EditTree.NULL_NODE) {
+			Node subtreeRoot;
+			if (p.getBalance() == Code.SAME) {
+				// the other side is now taller, but the height of p is unchanged
+				p.setBalace(isLeft ? Code.RIGHT : Code.LEFT);
+				return;
+			} else if ((p.getBalance() == Code.LEFT && isLeft) || (p.getBalance() == Code.RIGHT && !isLeft)) {
+				p.setBalace(Code.SAME);
+				subtreeRoot = p;
 			} else {
-				if (this.left == EditTree.NULL_NODE && this.right == EditTree.NULL_NODE) {
-					this.parent.right = EditTree.NULL_NODE;
-					this.parent.left.checkRotate(true, tree);
-
-				} else if (this.left == EditTree.NULL_NODE && this.right != EditTree.NULL_NODE) {
-					this.parent.right = this.right;
-					this.right.parent = this.parent.right;
-					this.parent.right.checkRotate(false, tree);
-				} else if (this.left != EditTree.NULL_NODE && this.right == EditTree.NULL_NODE) {
-					this.parent.right = this.left;
-					this.left.parent = this.parent.right;
-					this.parent.right.checkRotate(false, tree);
-				}
-				else{
-					Node current = this.right;
-				if (current.left != EditTree.NULL_NODE){
-					while (current.left != EditTree.NULL_NODE) {
-						current = current.left;
-					}
+				Node sibling = isLeft ? p.right : p.left;
+				subtreeRoot = p.doRotation(sibling, tree);
+				// rotating around a balanced sibling leaves the height alone
+				if (subtreeRoot.getBalance() != Code.SAME) {
+					return;
 				}
-				char toReturn = this.element;
-				this.element = current.element;
-				current.element = toReturn;
-				return this.delete( this.rank + 1, tree);
 			}
-			}
-			
+			p = subtreeRoot.parent;
+			isLeft = p.left == subtreeRoot;
 		}
-
-		return this.element;
-		// TODO Auto-generated method stub.
-		// If no children, make this a null node
-
-		// If one child, make this data child's data and delete child. Check
-		// rotation
-
-		// If two children, make this data this.right.data (or
-		// this.parent.right.data, etc) and remove other node. Check rotation
-
 	}
+
 	public int slowHeight() {
 		// base case
 		if (this == EditTree.NULL_NODE) {
@@ -438,7 +1056,7 @@ public class Node extends AbstractDisplayableNode{
 		if (this == EditTree.NULL_NODE) {
 			return 0;
 		}
-		return this.left.size() + this.right.size() + 1;
+		return this.left.slowSize() + this.right.slowSize() + 1;
 	}
 
 	public boolean hasLeft() {
@@ -472,19 +1090,4 @@ public class Node extends AbstractDisplayableNode{
 	public char getElement() {
 		return this.element;
 	}
-
-	@Override
-	public String getRankString() {
-		return Integer.toString(this.rank);
-	}
-
-	@Override
-	public String getBalanceString() {
-		return this.balance.toString();
-	}
-
-	@Override
-	public String getDataString() {
-		return Character.toString(this.element);
-	}
 }
@@ -0,0 +1,451 @@
+package editortrees;
+
+/**
+ * The same height-balanced tree with rank as EditTree, but its nodes are
+ * never changed once they are made. An edit copies just the nodes on the
+ * path it walks, O(log N) of them, and everything else is shared with the
+ * tree as it was before. So snapshot() is O(1), and an editor can keep
+ * thousands of undo points around for O(log N) memory apiece.
+ *
+ * Nodes can't have parent links, since one node may be a child of many
+ * different versions of its parent, so all of the walks are done top-down
+ * and rebalancing happens on the way back up the recursion.
+ */
+public class PersistentEditTree {
+
+	/**
+	 * An immutable node. Size and height are stored rather than worked out
+	 * from balance codes, since nothing can be updated in place later.
+	 */
+	private static final class PNode {
+		final char element;
+		final PNode left, right;
+		final int rank; // number of characters in the left subtree
+		final int size; // number of characters in this whole subtree
+		final int height;
+
+		PNode(char element, PNode left, PNode right) {
+			this.element = element;
+			this.left = left;
+			this.right = right;
+			this.rank = size(left);
+			this.size = this.rank + 1 + size(right);
+			this.height = 1 + Math.max(height(left), height(right));
+		}
+	}
+
+	private PNode root;
+	private int rotCount = 0;
+
+	/**
+	 * Construct an empty tree
+	 */
+	public PersistentEditTree() {
+	}
+
+	/**
+	 * Create a tree whose toString is chars, in O(N) time with no rotations.
+	 *
+	 * @param chars
+	 */
+	public PersistentEditTree(CharSequence chars) {
+		this.root = build(chars, 0, chars.length());
+	}
+
+	private PersistentEditTree(PNode root, int rotCount) {
+		this.root = root;
+		this.rotCount = rotCount;
+	}
+
+	private static PNode build(CharSequence chars, int start, int end) {
+		if (start >= end) {
+			return null;
+		}
+		int mid = (start + end) >>> 1;
+		return new PNode(chars.charAt(mid), build(chars, start, mid), build(chars, mid + 1, end));
+	}
+
+	private static int size(PNode n) {
+		return (n == null) ? 0 : n.size;
+	}
+
+	private static int height(PNode n) {
+		return (n == null) ? -1 : n.height;
+	}
+
+	/**
+	 * Takes a snapshot in O(1) time. The snapshot and this tree share all of
+	 * their nodes, and editing either one leaves the other alone.
+	 *
+	 * @return a tree with the same contents as this one
+	 */
+	public PersistentEditTree snapshot() {
+		return new PersistentEditTree(this.root, this.rotCount);
+	}
+
+	/**
+	 * Goes back to the version that snapshot was taken of, in O(1) time; this
+	 * is how an undo is done. The snapshot itself is left as it was, so it
+	 * can be restored again later.
+	 *
+	 * @param snapshot
+	 */
+	public void restore(PersistentEditTree snapshot) {
+		this.root = snapshot.root;
+		this.rotCount = snapshot.rotCount;
+	}
+
+	/**
+	 *
+	 * @return the number of characters in this tree
+	 */
+	public int size() {
+		return size(this.root);
+	}
+
+	/**
+	 *
+	 * @return the height of this tree; -1 if it is empty
+	 */
+	public int height() {
+		return height(this.root);
+	}
+
+	/**
+	 * @return number of rotations done to get to this version of the tree,
+	 *         counting the versions it was snapshotted from. A double
+	 *         rotation counts as two.
+	 */
+	public int totalRotationCount() {
+		return this.rotCount;
+	}
+
+	/**
+	 * return the string produced by an inorder traversal of this tree
+	 */
+	@Override
+	public String toString() {
+		char[] chars = new char[this.size()];
+		stringify(this.root, chars, 0);
+		return new String(chars);
+	}
+
+	private static int stringify(PNode n, char[] dest, int destPos) {
+		if (n == null) {
+			return destPos;
+		}
+		destPos = stringify(n.left, dest, destPos);
+		dest[destPos++] = n.element;
+		return stringify(n.right, dest, destPos);
+	}
+
+	/**
+	 * Same format as EditTree.toDebugString, with the balance codes worked
+	 * out from the heights.
+	 *
+	 * @return The string of elements, ranks, and balance codes, given in a
+	 *         pre-order traversal of the tree.
+	 */
+	public String toDebugString() {
+		StringBuilder sb = new StringBuilder("[");
+		stringifyDebug(this.root, sb);
+		if (sb.length() > 2) {
+			sb.delete(sb.length() - 2, sb.length());
+		}
+		return sb.append("]").toString();
+	}
+
+	private static void stringifyDebug(PNode n, StringBuilder sb) {
+		if (n == null) {
+			return;
+		}
+		int lean = height(n.right) - height(n.left);
+		sb.append(n.element);
+		sb.append(n.rank);
+		sb.append((lean < 0) ? Node.Code.LEFT : (lean > 0) ? Node.Code.RIGHT : Node.Code.SAME);
+		sb.append(", ");
+		stringifyDebug(n.left, sb);
+		stringifyDebug(n.right, sb);
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position in the tree
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		PNode current = this.root;
+		while (pos != current.rank) {
+			if (pos < current.rank) {
+				current = current.left;
+			} else {
+				pos -= current.rank + 1;
+				current = current.right;
+			}
+		}
+		return current.element;
+	}
+
+	/**
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless the whole range is within this tree
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || length > this.size() - pos) {
+			throw new IndexOutOfBoundsException();
+		}
+		char[] chars = new char[length];
+		copy(this.root, pos, length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Copies the part of n's subtree from pos to pos+length into dest, only
+	 * visiting the subtrees that overlap it.
+	 */
+	private static void copy(PNode n, int pos, int length, char[] dest, int destPos) {
+		if (length == 0) {
+			return;
+		}
+		if (pos < n.rank) {
+			int fromLeft = Math.min(length, n.rank - pos);
+			copy(n.left, pos, fromLeft, dest, destPos);
+			pos += fromLeft;
+			length -= fromLeft;
+			destPos += fromLeft;
+		}
+		if (length == 0) {
+			return;
+		}
+		if (pos == n.rank) {
+			dest[destPos++] = n.element;
+			pos++;
+			length--;
+		}
+		copy(n.right, pos - n.rank - 1, length, dest, destPos);
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char c) {
+		this.add(c, this.size());
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 */
+	public void add(char c, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.root = this.add(this.root, c, pos);
+	}
+
+	private PNode add(PNode n, char c, int pos) {
+		if (n == null) {
+			return new PNode(c, null, null);
+		}
+		if (pos <= n.rank) {
+			return this.balance(n.element, this.add(n.left, c, pos), n.right);
+		}
+		return this.balance(n.element, n.left, this.add(n.right, c, pos - n.rank - 1));
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position of character to delete from this tree
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		char deleted = this.get(pos);
+		this.root = this.delete(this.root, pos);
+		return deleted;
+	}
+
+	private PNode delete(PNode n, int pos) {
+		if (pos < n.rank) {
+			return this.balance(n.element, this.delete(n.left, pos), n.right);
+		}
+		if (pos > n.rank) {
+			return this.balance(n.element, n.left, this.delete(n.right, pos - n.rank - 1));
+		}
+		if (n.left == null) {
+			return n.right;
+		}
+		if (n.right == null) {
+			return n.left;
+		}
+		// replaced by the successor, like in EditTree
+		PNode successor = n.right;
+		while (successor.left != null) {
+			successor = successor.left;
+		}
+		return this.balance(successor.element, n.left, this.delete(n.right, 0));
+	}
+
+	/**
+	 * Inserts all of s at pos in O(log N + length of s) time, by building s
+	 * into a balanced tree of its own and joining it in.
+	 *
+	 * @param pos
+	 *            position the first character of s ends up at
+	 * @param s
+	 *            characters to insert
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 */
+	public void insert(int pos, CharSequence s) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		PNode middle = build(s, 0, s.length());
+		this.root = this.join(this.join(this.prefix(this.root, pos), middle), this.suffix(this.root, pos));
+	}
+
+	/**
+	 * Append the contents of other to this tree in O(log N) time. Other is
+	 * made empty, like in EditTree; take a snapshot of it first to keep it.
+	 *
+	 * @param other
+	 * @throws IllegalArgumentException
+	 *             if this == other
+	 */
+	public void concatenate(PersistentEditTree other) throws IllegalArgumentException {
+		if (this == other) {
+			throw new IllegalArgumentException("can't concatenate a tree with itself");
+		}
+		this.root = this.join(this.root, other.root);
+		other.root = null;
+	}
+
+	/**
+	 * Splits this tree in O(log N) time. Only the nodes along the path to pos
+	 * are copied; the two halves share the rest with each other and with any
+	 * snapshots of this tree.
+	 *
+	 * @param pos
+	 *            where to split this tree
+	 * @return a new tree containing all of the elements of this tree whose
+	 *         positions are >= pos. They are removed from this tree.
+	 * @throws IndexOutOfBoundsException
+	 */
+	public PersistentEditTree split(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		PersistentEditTree other = new PersistentEditTree();
+		other.root = this.suffix(this.root, pos);
+		this.root = this.prefix(this.root, pos);
+		return other;
+	}
+
+	/**
+	 * @return a tree of the first pos characters of n's subtree
+	 */
+	private PNode prefix(PNode n, int pos) {
+		if (n == null) {
+			return null;
+		}
+		if (pos <= n.rank) {
+			return this.prefix(n.left, pos);
+		}
+		return this.join(n.left, n.element, this.prefix(n.right, pos - n.rank - 1));
+	}
+
+	/**
+	 * @return a tree of the characters of n's subtree from pos on
+	 */
+	private PNode suffix(PNode n, int pos) {
+		if (n == null) {
+			return null;
+		}
+		if (pos > n.rank) {
+			return this.suffix(n.right, pos - n.rank - 1);
+		}
+		return this.join(this.suffix(n.left, pos), n.element, n.right);
+	}
+
+	/**
+	 * Joins l and r, taking the last character of l out to go between them.
+	 */
+	private PNode join(PNode l, PNode r) {
+		if (l == null) {
+			return r;
+		}
+		if (r == null) {
+			return l;
+		}
+		PNode last = l;
+		while (last.right != null) {
+			last = last.right;
+		}
+		return this.join(this.delete(l, l.size - 1), last.element, r);
+	}
+
+	/**
+	 * Joins l, x and r (in that inorder order) in time proportional to the
+	 * difference in their heights, copying just the spine of the taller tree
+	 * down to where the heights match up.
+	 */
+	private PNode join(PNode l, char x, PNode r) {
+		int hl = height(l);
+		int hr = height(r);
+		if (hl > hr + 1) {
+			return this.balance(l.element, l.left, this.join(l.right, x, r));
+		}
+		if (hr > hl + 1) {
+			return this.balance(r.element, this.join(l, x, r.left), r.right);
+		}
+		return new PNode(x, l, r);
+	}
+
+	/**
+	 * Makes a node out of element, l and r, rotating if the heights of l and
+	 * r differ by two. Rotations make new nodes rather than relinking old
+	 * ones.
+	 */
+	private PNode balance(char element, PNode l, PNode r) {
+		int hl = height(l);
+		int hr = height(r);
+		if (hl > hr + 1) {
+			if (height(l.left) >= height(l.right)) {
+				this.rotCount++;
+				return new PNode(l.element, l.left, new PNode(element, l.right, r));
+			}
+			this.rotCount += 2;
+			PNode c = l.right;
+			return new PNode(c.element, new PNode(l.element, l.left, c.left), new PNode(element, c.right, r));
+		}
+		if (hr > hl + 1) {
+			if (height(r.right) >= height(r.left)) {
+				this.rotCount++;
+				return new PNode(r.element, new PNode(element, l, r.left), r.right);
+			}
+			this.rotCount += 2;
+			PNode c = r.left;
+			return new PNode(c.element, new PNode(element, l, c.left), new PNode(r.element, c.right, r.right));
+		}
+		return new PNode(element, l, r);
+	}
+}
@@ -0,0 +1,121 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A PersistentEditTree should end up with exactly the shape of an EditTree
+ * that had the same edits made to it, and snapshots must never see edits
+ * made after they were taken.
+ *
+ */
+public class PersistentEditTreeTest {
+
+	@Test
+	public void testSameTreeAsEditTree() {
+		EditTree t = new EditTree();
+		PersistentEditTree p = new PersistentEditTree();
+		Random random = new Random(230);
+		for (int k = 0; k < 5000; k++) {
+			char ch = (char) ('a' + random.nextInt(26));
+			int pos = random.nextInt(t.size() + 1);
+			t.add(ch, pos);
+			p.add(ch, pos);
+			if (k % 3 == 0) {
+				pos = random.nextInt(t.size());
+				assertEquals(t.delete(pos), p.delete(pos));
+			}
+		}
+		assertEquals(t.toDebugString(), p.toDebugString());
+		assertEquals(t.totalRotationCount(), p.totalRotationCount());
+		assertEquals(t.height(), p.height());
+		assertEquals(t.get(100, 250), p.get(100, 250));
+		for (int pos = 0; pos < t.size(); pos += 7) {
+			assertEquals(t.get(pos), p.get(pos));
+		}
+	}
+
+	@Test
+	public void testSnapshotsAreUnchanged() {
+		PersistentEditTree p = new PersistentEditTree("hello");
+		List<PersistentEditTree> undo = new ArrayList<>();
+		List<String> expected = new ArrayList<>();
+		Random random = new Random(230);
+		for (int k = 0; k < 1000; k++) {
+			undo.add(p.snapshot());
+			expected.add(p.toString());
+			int pos = random.nextInt(p.size() + 1);
+			if (random.nextInt(4) == 0 && pos < p.size()) {
+				p.delete(pos);
+			} else {
+				p.add((char) ('a' + random.nextInt(26)), pos);
+			}
+		}
+		for (int k = undo.size() - 1; k >= 0; k--) {
+			assertEquals(expected.get(k), undo.get(k).toString());
+		}
+		// editing an old version doesn't touch the newer ones either
+		PersistentEditTree old = undo.get(10);
+		String newest = p.toString();
+		old.add('!', 0);
+		assertEquals('!', old.get(0));
+		assertEquals(newest, p.toString());
+		assertEquals(expected.get(10), undo.get(10).toString().substring(1));
+
+		// undoing is restoring a snapshot, which can be restored again later
+		PersistentEditTree first = undo.get(0);
+		p.restore(first);
+		assertEquals("hello", p.toString());
+		p.add('!');
+		assertEquals("hello", first.toString());
+		p.restore(first);
+		assertEquals("hello", p.toString());
+	}
+
+	@Test
+	public void testSplitAndConcatenate() {
+		StringBuilder sb = new StringBuilder();
+		for (int k = 0; k < 10000; k++) {
+			sb.append((char) ('a' + k % 26));
+		}
+		String s = sb.toString();
+		PersistentEditTree p = new PersistentEditTree(s);
+		for (int pos = 0; pos <= s.length(); pos += 997) {
+			PersistentEditTree before = p.snapshot();
+			PersistentEditTree right = p.split(pos);
+			assertEquals(s.substring(0, pos), p.toString());
+			assertEquals(s.substring(pos), right.toString());
+			// no AVL tree of 10000 nodes is taller than 18
+			assertTrue(p.height() <= 18 && right.height() <= 18);
+			assertEquals(s, before.toString());
+			p.concatenate(right);
+			assertEquals(0, right.size());
+			assertEquals(s, p.toString());
+		}
+		p.insert(5000, "HELLO");
+		assertEquals(s.substring(0, 5000) + "HELLO" + s.substring(5000), p.toString());
+		assertEquals("HELLO", p.get(5000, 5));
+		try {
+			p.concatenate(p);
+			fail("Did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			p.split(p.size() + 1);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			p.get(1, Integer.MAX_VALUE);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+}
@@ -0,0 +1,375 @@
+package editortrees;
+
+/**
+ * A rope: a height-balanced tree whose leaves each hold a block of
+ * characters instead of a single one. Internal nodes only steer, using rank
+ * (the number of characters in their left subtree) the same way Node does.
+ * With the default 256-character blocks a document needs a couple of hundred
+ * times fewer nodes than an EditTree, and the tree is about eight levels
+ * shorter.
+ *
+ * Every internal node has exactly two children, and leaves always hold at
+ * least one character. Neighbouring leaves that shrink enough to fit into one
+ * block are merged back together.
+ */
+public class RopeEditTree {
+
+	public static final int DEFAULT_CHUNK_SIZE = 256;
+
+	/**
+	 * Either a leaf (chunk != null) or an internal node with two children.
+	 */
+	private static class RopeNode {
+		RopeNode left, right;
+		int rank; // characters in the left subtree
+		int size; // characters in this whole subtree
+		int height;
+		char[] chunk;
+
+		RopeNode(char[] chunk, int count) {
+			this.chunk = chunk;
+			this.size = count;
+		}
+
+		RopeNode(RopeNode left, RopeNode right) {
+			this.left = left;
+			this.right = right;
+			this.update();
+		}
+
+		boolean isLeaf() {
+			return this.chunk != null;
+		}
+
+		/**
+		 * recomputes rank, size and height of an internal node from its
+		 * children
+		 */
+		void update() {
+			this.rank = this.left.size;
+			this.size = this.left.size + this.right.size;
+			this.height = 1 + Math.max(this.left.height, this.right.height);
+		}
+	}
+
+	private final int chunkSize;
+	private RopeNode root;
+	private int rotCount = 0;
+
+	/**
+	 * Construct an empty rope with the default block size
+	 */
+	public RopeEditTree() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Construct an empty rope whose leaves hold up to chunkSize characters
+	 *
+	 * @param chunkSize
+	 */
+	public RopeEditTree(int chunkSize) {
+		if (chunkSize < 2) {
+			throw new IllegalArgumentException("chunks must hold at least 2 characters");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Create a rope whose toString is chars, in O(N) time. Leaves are filled
+	 * three quarters of the way, so typing into a freshly loaded document
+	 * doesn't immediately split every block it touches.
+	 *
+	 * @param chars
+	 */
+	public RopeEditTree(CharSequence chars) {
+		this(chars, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param chars
+	 * @param chunkSize
+	 *            the most characters one leaf can hold
+	 */
+	public RopeEditTree(CharSequence chars, int chunkSize) {
+		this(chunkSize);
+		int fill = Math.max(1, chunkSize * 3 / 4);
+		int leaves = (chars.length() + fill - 1) / fill;
+		this.root = this.build(chars, 0, leaves, fill);
+	}
+
+	private RopeNode build(CharSequence chars, int firstLeaf, int lastLeaf, int fill) {
+		if (firstLeaf >= lastLeaf) {
+			return null;
+		}
+		if (lastLeaf - firstLeaf == 1) {
+			int start = firstLeaf * fill;
+			int count = Math.min(fill, chars.length() - start);
+			char[] chunk = new char[this.chunkSize];
+			for (int k = 0; k < count; k++) {
+				chunk[k] = chars.charAt(start + k);
+			}
+			return new RopeNode(chunk, count);
+		}
+		int mid = (firstLeaf + lastLeaf) >>> 1;
+		return new RopeNode(this.build(chars, firstLeaf, mid, fill), this.build(chars, mid, lastLeaf, fill));
+	}
+
+	/**
+	 *
+	 * @return the number of characters in this rope
+	 */
+	public int size() {
+		return (this.root == null) ? 0 : this.root.size;
+	}
+
+	/**
+	 *
+	 * @return the height of this rope, counted in nodes (not characters); -1
+	 *         if it is empty
+	 */
+	public int height() {
+		return (this.root == null) ? -1 : this.root.height;
+	}
+
+	/**
+	 * @return number of rotations since the rope was created. A double
+	 *         rotation counts as two.
+	 */
+	public int totalRotationCount() {
+		return this.rotCount;
+	}
+
+	/**
+	 * return the characters of this rope, in order
+	 */
+	@Override
+	public String toString() {
+		char[] chars = new char[this.size()];
+		this.get(0, chars.length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position in the rope
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		RopeNode current = this.root;
+		while (!current.isLeaf()) {
+			if (pos < current.rank) {
+				current = current.left;
+			} else {
+				pos -= current.rank;
+				current = current.right;
+			}
+		}
+		return current.chunk[pos];
+	}
+
+	/**
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless the whole range is within this rope
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || length > this.size() - pos) {
+			throw new IndexOutOfBoundsException();
+		}
+		char[] chars = new char[length];
+		this.get(pos, length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Copies length characters starting at pos into dest, a whole block at a
+	 * time.
+	 *
+	 * @param pos
+	 * @param length
+	 * @param dest
+	 * @param destPos
+	 * @throws IndexOutOfBoundsException
+	 *             unless the whole range is within this rope and fits in dest
+	 */
+	public void get(int pos, int length, char[] dest, int destPos) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || length > this.size() - pos) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (destPos < 0 || length > dest.length - destPos) {
+			throw new IndexOutOfBoundsException("range doesn't fit in the destination array");
+		}
+		if (length > 0) {
+			this.copy(this.root, pos, length, dest, destPos);
+		}
+	}
+
+	private void copy(RopeNode node, int pos, int length, char[] dest, int destPos) {
+		if (node.isLeaf()) {
+			System.arraycopy(node.chunk, pos, dest, destPos, length);
+			return;
+		}
+		if (pos < node.rank) {
+			int fromLeft = Math.min(length, node.rank - pos);
+			this.copy(node.left, pos, fromLeft, dest, destPos);
+			if (fromLeft < length) {
+				this.copy(node.right, 0, length - fromLeft, dest, destPos + fromLeft);
+			}
+		} else {
+			this.copy(node.right, pos - node.rank, length, dest, destPos);
+		}
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add to the end of this rope.
+	 */
+	public void add(char c) {
+		this.add(c, this.size());
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add
+	 * @param pos
+	 *            character added in this position
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this rope
+	 */
+	public void add(char c, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (this.root == null) {
+			this.root = new RopeNode(new char[this.chunkSize], 0);
+		}
+		this.root = this.add(this.root, c, pos);
+	}
+
+	private RopeNode add(RopeNode node, char c, int pos) {
+		if (node.isLeaf()) {
+			if (node.size == this.chunkSize) {
+				// a full block turns into two half-full blocks under a new
+				// internal node
+				int half = this.chunkSize / 2;
+				char[] rightChunk = new char[this.chunkSize];
+				System.arraycopy(node.chunk, half, rightChunk, 0, node.size - half);
+				RopeNode right = new RopeNode(rightChunk, node.size - half);
+				node.size = half;
+				RopeNode parent = new RopeNode(node, right);
+				return this.add(parent, c, pos);
+			}
+			System.arraycopy(node.chunk, pos, node.chunk, pos + 1, node.size - pos);
+			node.chunk[pos] = c;
+			node.size++;
+			return node;
+		}
+		if (pos <= node.rank) {
+			node.left = this.add(node.left, c, pos);
+		} else {
+			node.right = this.add(node.right, c, pos - node.rank);
+		}
+		return this.rebalance(node);
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position of character to delete from this rope
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size()) {
+			throw new IndexOutOfBoundsException();
+		}
+		char deleted = this.get(pos);
+		this.root = this.delete(this.root, pos);
+		return deleted;
+	}
+
+	/**
+	 * @return the subtree with the character at pos removed, or null if
+	 *         nothing is left of it
+	 */
+	private RopeNode delete(RopeNode node, int pos) {
+		if (node.isLeaf()) {
+			System.arraycopy(node.chunk, pos + 1, node.chunk, pos, node.size - pos - 1);
+			node.size--;
+			return (node.size == 0) ? null : node;
+		}
+		if (pos < node.rank) {
+			node.left = this.delete(node.left, pos);
+		} else {
+			node.right = this.delete(node.right, pos - node.rank);
+		}
+		// an internal node needs both children, so an emptied leaf takes its
+		// parent with it
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+		if (node.left.isLeaf() && node.right.isLeaf() && node.size - 1 <= this.chunkSize) {
+			System.arraycopy(node.right.chunk, 0, node.left.chunk, node.left.size, node.right.size);
+			node.left.size += node.right.size;
+			return node.left;
+		}
+		return this.rebalance(node);
+	}
+
+	/**
+	 * Updates an internal node after one of its subtrees changed, rotating if
+	 * the heights of its subtrees now differ by two.
+	 */
+	private RopeNode rebalance(RopeNode node) {
+		node.update();
+		int balance = node.right.height - node.left.height;
+		if (balance > 1) {
+			if (node.right.right.height < node.right.left.height) {
+				node.right = this.rotateRight(node.right);
+			}
+			return this.rotateLeft(node);
+		}
+		if (balance < -1) {
+			if (node.left.left.height < node.left.right.height) {
+				node.left = this.rotateLeft(node.left);
+			}
+			return this.rotateRight(node);
+		}
+		return node;
+	}
+
+	private RopeNode rotateRight(RopeNode a) {
+		this.rotCount++;
+		RopeNode b = a.left;
+		a.left = b.right;
+		b.right = a;
+		a.update();
+		b.update();
+		return b;
+	}
+
+	private RopeNode rotateLeft(RopeNode a) {
+		this.rotCount++;
+		RopeNode b = a.right;
+		a.right = b.left;
+		b.left = a;
+		a.update();
+		b.update();
+		return b;
+	}
+}
@@ -0,0 +1,88 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A RopeEditTree should read and edit exactly like an EditTree, so these
+ * tests mostly compare the two. Small chunk sizes make sure blocks get split
+ * and merged a lot.
+ *
+ */
+public class RopeEditTreeTest {
+
+	@Test
+	public void testSameTextAsEditTree() {
+		EditTree t = new EditTree();
+		RopeEditTree r = new RopeEditTree(4);
+		Random random = new Random(230);
+		for (int k = 0; k < 5000; k++) {
+			char ch = (char) ('a' + random.nextInt(26));
+			int pos = random.nextInt(t.size() + 1);
+			t.add(ch, pos);
+			r.add(ch, pos);
+			if (k % 3 == 0) {
+				pos = random.nextInt(t.size());
+				assertEquals(t.delete(pos), r.delete(pos));
+			}
+		}
+		assertEquals(t.toString(), r.toString());
+		assertEquals(t.size(), r.size());
+		for (int pos = 0; pos < t.size(); pos += 7) {
+			assertEquals(t.get(pos), r.get(pos));
+		}
+		assertEquals(t.get(100, 250), r.get(100, 250));
+		while (r.size() > 0) {
+			assertEquals(t.delete(0), r.delete(0));
+		}
+		assertEquals("", r.toString());
+		assertEquals(-1, r.height());
+	}
+
+	@Test
+	public void testBuildFromString() {
+		StringBuilder sb = new StringBuilder();
+		for (int k = 0; k < 100000; k++) {
+			sb.append((char) ('a' + k % 26));
+		}
+		RopeEditTree r = new RopeEditTree(sb);
+		assertEquals(sb.toString(), r.toString());
+		// 100000 characters in 192-character blocks is 521 leaves
+		assertTrue(r.height() <= 10);
+		r.add('!', 50000);
+		sb.insert(50000, '!');
+		assertEquals(sb.substring(49990, 50010), r.get(49990, 20));
+		assertEquals(0, r.totalRotationCount());
+	}
+
+	@Test
+	public void testThrowsIndexExceptions() {
+		RopeEditTree r = new RopeEditTree("abc");
+		try {
+			r.get(3);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			r.add('d', 4);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			r.get(1, 3);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			r.get(1, Integer.MAX_VALUE);
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		assertEquals("abc", r.toString());
+	}
+}
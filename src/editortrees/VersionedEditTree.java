@@ -0,0 +1,157 @@
+package editortrees;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A document that one thread edits while any number of others read it
+ * without ever waiting. Edits are made to a PersistentEditTree that only the
+ * writer sees, and afterwards a snapshot of it is published through an
+ * AtomicReference. Readers load whatever version was last published and
+ * walk it as long as they like: its nodes are never changed, and an edit
+ * only copies the O(log N) nodes on its path, so publishing costs nothing
+ * extra.
+ *
+ * Writers are serialized with each other, but never hold up readers.
+ */
+public class VersionedEditTree {
+
+	// what the writer edits; never handed out
+	private final PersistentEditTree working;
+	// the latest version, which nobody edits once it is published
+	private final AtomicReference<PersistentEditTree> published;
+
+	/**
+	 * Construct an empty document
+	 */
+	public VersionedEditTree() {
+		this(new PersistentEditTree());
+	}
+
+	/**
+	 * Create a document whose toString is chars, in O(N) time.
+	 *
+	 * @param chars
+	 */
+	public VersionedEditTree(CharSequence chars) {
+		this(new PersistentEditTree(chars));
+	}
+
+	private VersionedEditTree(PersistentEditTree working) {
+		this.working = working;
+		this.published = new AtomicReference<>(working.snapshot());
+	}
+
+	/**
+	 * Gets the latest version without waiting, in O(1) time. The caller gets
+	 * a tree of its own, so it can even edit it (to preview a change, say)
+	 * without anyone else seeing.
+	 *
+	 * @return the version published by the last edit or batch
+	 */
+	public PersistentEditTree snapshot() {
+		return this.published.get().snapshot();
+	}
+
+	/**
+	 * @return the number of characters in the latest version
+	 */
+	public int size() {
+		return this.published.get().size();
+	}
+
+	/**
+	 * @param pos
+	 *            position in the latest version
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		return this.published.get().get(pos);
+	}
+
+	/**
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless the whole range is within the latest version
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		return this.published.get().get(pos, length);
+	}
+
+	@Override
+	public String toString() {
+		return this.published.get().toString();
+	}
+
+	/**
+	 * @param c
+	 *            character to add to the end of the document
+	 */
+	public void add(char c) {
+		this.edit(t -> t.add(c));
+	}
+
+	/**
+	 * @param c
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for the document
+	 */
+	public void add(char c, int pos) throws IndexOutOfBoundsException {
+		this.edit(t -> t.add(c, pos));
+	}
+
+	/**
+	 * @param pos
+	 *            position of character to delete
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		char[] deleted = new char[1];
+		this.edit(t -> deleted[0] = t.delete(pos));
+		return deleted[0];
+	}
+
+	/**
+	 * @param pos
+	 *            position the first character of s ends up at
+	 * @param s
+	 *            characters to insert
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for the document
+	 */
+	public void insert(int pos, CharSequence s) throws IndexOutOfBoundsException {
+		this.edit(t -> t.insert(pos, s));
+	}
+
+	/**
+	 * Makes any number of edits and publishes them as one version, so readers
+	 * see either none of them or all of them. If edits throws, whatever it
+	 * already did is thrown away and the published version stays as it was.
+	 *
+	 * @param edits
+	 *            makes the edits to the tree it is given
+	 */
+	public synchronized void edit(Consumer<PersistentEditTree> edits) {
+		PersistentEditTree before = this.working.snapshot();
+		try {
+			edits.accept(this.working);
+		} catch (RuntimeException e) {
+			this.working.restore(before);
+			throw e;
+		}
+		this.publish();
+	}
+
+	private void publish() {
+		this.published.set(this.working.snapshot());
+	}
+}
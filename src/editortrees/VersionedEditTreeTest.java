@@ -0,0 +1,111 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Readers must always see some whole published version, and a version they
+ * loaded must never change under them, however much the writer does
+ * meanwhile.
+ *
+ */
+public class VersionedEditTreeTest {
+
+	@Test
+	public void testEditsAndBatches() {
+		VersionedEditTree t = new VersionedEditTree("abcdef");
+		PersistentEditTree before = t.snapshot();
+		t.add('g');
+		t.add('!', 0);
+		assertEquals('c', t.delete(3));
+		t.insert(1, "xyz");
+		assertEquals("!xyzabdefg", t.toString());
+		assertEquals("abcdef", before.toString());
+
+		t.edit(tree -> {
+			tree.delete(0);
+			tree.add('?');
+		});
+		assertEquals("xyzabdefg?", t.toString());
+		assertEquals(10, t.size());
+		assertEquals("abd", t.get(3, 3));
+
+		// a batch that fails part way leaves nothing behind
+		try {
+			t.edit(tree -> {
+				tree.delete(0);
+				tree.add('*', 100);
+			});
+			fail("Did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		assertEquals("xyzabdefg?", t.toString());
+		t.add('.');
+		assertEquals("xyzabdefg?.", t.toString());
+
+		// editing a snapshot is private to whoever took it
+		PersistentEditTree mine = t.snapshot();
+		mine.delete(0);
+		assertEquals('x', t.get(0));
+	}
+
+	@Test
+	public void testReadersSeeWholeVersions() throws InterruptedException {
+		// every published version is a run of one letter, and each batch
+		// switches the whole run over to the next letter
+		VersionedEditTree t = new VersionedEditTree("aaaaaaaaaaaaaaaaaaaa");
+		AtomicBoolean done = new AtomicBoolean(false);
+		AtomicReference<String> failure = new AtomicReference<>();
+		List<Thread> readers = new ArrayList<>();
+		for (int r = 0; r < 4; r++) {
+			readers.add(new Thread(() -> {
+				while (!done.get() && failure.get() == null) {
+					PersistentEditTree version = t.snapshot();
+					String text = version.toString();
+					for (int k = 1; k < text.length(); k++) {
+						if (text.charAt(k) != text.charAt(0)) {
+							failure.set("saw part of a batch: " + text);
+						}
+					}
+					if (!text.equals(version.toString())) {
+						failure.set("version changed after it was loaded");
+					}
+				}
+			}));
+		}
+		for (Thread reader : readers) {
+			reader.start();
+		}
+		Random random = new Random(230);
+		for (int k = 0; k < 20000 && failure.get() == null; k++) {
+			t.edit(tree -> {
+				char next = (char) ('a' + (tree.get(0) - 'a' + 1) % 26);
+				int size = tree.size();
+				for (int pos = 0; pos < size; pos++) {
+					tree.delete(pos);
+					tree.add(next, pos);
+				}
+				if (random.nextBoolean()) {
+					tree.add(next, random.nextInt(size + 1));
+				} else if (size > 1) {
+					tree.delete(random.nextInt(size));
+				}
+			});
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertEquals(null, failure.get());
+		assertTrue(t.size() > 0);
+	}
+}
@@ -7,6 +7,11 @@ package gui;
  */
 abstract public class AbstractDisplayableBinaryTree {
 	private DisplayableBinaryTreeComponent component;
+	// bumped by treeChanged(), so the GUI knows when what it drew is out of date
+	private volatile int version;
+	// set by the first treeChanged(). Until then the GUI can't tell when the tree changes, so it falls back to
+	// redrawing it every so often.
+	private volatile boolean reportsChanges;
 
 	/**
 	 * Constructs a new displayable binary tree
@@ -30,13 +35,41 @@ abstract public class AbstractDisplayableBinaryTree {
 	abstract public int slowSize();
 
 	/**
-	 * Returns the root of the binary tree.
+	 * Returns the root of the binary tree. Call treeChanged() after changing the tree, or the GUI will only pick the
+	 * change up a few times a second.
 	 * @return
 	 */
 	abstract public AbstractDisplayableNode getRoot();
 
 	/**
-	 * Shows the binary tree in an JFrame.
+	 * Subclasses call this after every change to the tree. If the tree is being shown, a repaint is scheduled; a
+	 * burst of changes is drawn in a single frame, and nothing is redrawn while the tree stays the same.
+	 */
+	protected void treeChanged() {
+		this.reportsChanges = true;
+		this.version++;
+		this.component.treeChanged();
+	}
+
+	/**
+	 * Returns a number that changes every time treeChanged() is called.
+	 * 
+	 * @return
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * @return whether treeChanged() has ever been called, which means it can be counted on to say when to redraw
+	 */
+	boolean reportsChanges() {
+		return this.reportsChanges;
+	}
+
+	/**
+	 * Shows the binary tree in an JFrame. The window is redrawn whenever treeChanged() is called; for a subclass that
+	 * never calls it, it is redrawn a few times a second instead.
 	 */
 	public void show() {
 		this.component.show();
@@ -1,17 +1,30 @@
 package gui;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JComponent;
 import javax.swing.JFrame;
+import javax.swing.Timer;
 
 // This class handles all the GUI logic
 public class DisplayableBinaryTreeComponent extends JComponent {
@@ -19,6 +32,19 @@ public class DisplayableBinaryTreeComponent extends JComponent {
 	private AbstractDisplayableBinaryTree tree;
 	private static final int DEFAULT_WIDTH = 960;
 	private static final int DEFAULT_HEIGHT = 1080;
+	// changes to the tree are drawn at most once per frame (about 60 a second)
+	private static final int FRAME_MILLIS = 16;
+	// trees that never call treeChanged() are redrawn this often instead
+	private static final int POLL_MILLIS = 250;
+	// the zoomed tree is drawn in square tiles this many pixels on a side
+	private static final int TILE_SIZE = 256;
+	// about 16MB of tiles, enough to cover a big screen a few times over
+	private static final int MAX_TILES = 64;
+	// each notch of the mouse wheel zooms by this much
+	private static final double ZOOM_STEP = 1.25;
+	// stops zooming in once the circles are this big, since finding the font
+	// for them gets slow and there is nothing more to see
+	private static final double MAX_ZOOMED_RADIUS = 200;
 	
 
 	// a stormy gray background to be easy on the eyes at night, and set a stormy mood.
@@ -40,6 +66,48 @@ public class DisplayableBinaryTreeComponent extends JComponent {
 	private double angle;
 	private boolean goingCrazy;
 	private AtomicBoolean shouldRun;
+	// set from the first change after a frame until the next frame is drawn
+	private final AtomicBoolean repaintPending = new AtomicBoolean(false);
+	private Timer frameTimer;
+	private Timer pollTimer;
+	private final TreePainter painter = new TreePainter();
+	// what was worked out for the last frame, and the tree version and window
+	// size it was worked out for
+	private TreeLayout layout;
+	private int layoutVersion;
+	private int layoutWidth;
+	private int layoutHeight;
+	private Font font;
+	private long fontRadius;
+	private double layoutZoom;
+	// 1 shows the whole tree in the window. The tree is laid out as if the
+	// window were zoom times bigger, and panX, panY is where the corner of that
+	// bigger picture is drawn in the window.
+	private double zoom = 1;
+	private int panX;
+	private int panY;
+	// tiles of the laid out tree that have already been drawn, by column and
+	// row, least recently used first. They are only used for panning around a
+	// zoomed in tree that isn't changing; a new layout (from a tree change,
+	// resize or zoom) gives them all up to spareTiles.
+	private final Map<Long, BufferedImage> tiles = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+			if (this.size() > MAX_TILES) {
+				spareTiles.push(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+	// images of tiles that were given up, to be cleared and drawn over
+	// rather than making new ones
+	private final Deque<BufferedImage> spareTiles = new ArrayDeque<>();
+	// font sizes are tried by deriving from this rather than making a new
+	// Font by name each time
+	private static final Font MEASURING_FONT = new Font(FONT_NAME, Font.CENTER_BASELINE, 0);
 
 	public DisplayableBinaryTreeComponent(AbstractDisplayableBinaryTree editorTree) {
 		this.tree = editorTree;
@@ -56,13 +124,69 @@ public class DisplayableBinaryTreeComponent extends JComponent {
 		this.width = this.frame.getContentPane().getWidth() - 4;// - 18; // adjust for margins
 		this.height = this.frame.getContentPane().getHeight() - 4;// - 45; // adjust for the margins
 
+		// the layout only has to be worked out again if the tree or the window
+		// changed since the last frame (or the circles are going crazy). A tree
+		// that doesn't call treeChanged() could have changed at any time, so
+		// its layout is always worked out again.
+		int version = this.tree.getVersion();
+		boolean laidOut = false;
+		if (this.layout == null || this.goingCrazy || !this.tree.reportsChanges() || version != this.layoutVersion || this.width != this.layoutWidth
+				|| this.height != this.layoutHeight || this.zoom != this.layoutZoom) {
+			this.layout = this.layOut(g2);
+			this.layoutVersion = version;
+			this.layoutWidth = this.width;
+			this.layoutHeight = this.height;
+			this.layoutZoom = this.zoom;
+			this.spareTiles.addAll(this.tiles.values());
+			this.tiles.clear();
+			laidOut = true;
+		}
+		if (this.layout.size() < 1) {
+			return;
+		}
+		g2.setFont(this.font);
+		// RAISE THE BAR VVVVV
+		g2.setColor(Color.blue); // blue looks so much better
+		g2.fill(new Rectangle2D.Double(this.width - 5, 50, 10, 5));
+		g2.fill(new Rectangle2D.Double(this.width - 10, 60, 20, 5));
+		g2.fill(new Rectangle2D.Double(this.width - 15, 70, 30, 5));
+		g2.fill(new Rectangle2D.Double(this.width - 20, 80, 40, 5));
+		g2.fill(new Rectangle2D.Double(this.width - 25, 90, 50, 5));
+		// // RAISE THE BAR ^^^^^
+		if (laidOut || this.zoom == 1) {
+			// tiles only pay off if the next frame can use them, which it
+			// can't if the tree is changing, and without zoom there is nothing
+			// outside the window to pan to
+			g2.translate(this.panX, this.panY);
+			this.painter.paint(g2, this.layout);
+			g2.translate(-this.panX, -this.panY);
+		} else {
+			this.drawTiles(g2);
+		}
+		if (this.goingCrazy) {
+			// the circles only keep changing size if frames keep coming
+			this.treeChanged();
+		}
+	}
+
+	/**
+	 * works out the spacing, circle size and font for the current window size,
+	 * and where every node goes
+	 *
+	 * @param g2
+	 * @return the new layout, which is empty if the tree is empty
+	 */
+	private TreeLayout layOut(Graphics2D g2) {
 		int treeHeight = this.tree.slowHeight();
 		int treeSize = this.tree.slowSize();
 		if (treeSize < 1) {
-			return;
+			return new TreeLayout(null, 0, 0, 0, 0, 0, 0);
 		}
 
-		this.xDistance = this.width / ((double) (treeSize)); // make the constant
+		// zooming in lays the tree out as if the window were bigger
+		double zoomedWidth = this.width * this.zoom;
+		double zoomedHeight = this.height * this.zoom;
+		this.xDistance = zoomedWidth / ((double) (treeSize)); // make the constant
 		this.circleRadius = this.xDistance / 2.0; // sets the circle diameter to the delta x distance
 		Dimension minSize = new Dimension((int) (treeSize * 20 + 18), (int) (treeHeight * 30 + 45));
 		if (minSize.getHeight() > 1080) {
@@ -78,44 +202,158 @@ public class DisplayableBinaryTreeComponent extends JComponent {
 			// fun feature to see if students notice that the circles are changing size
 			this.circleRadius += 10 * Math.sin(3 * this.angle) + 2 * Math.cos(15 * this.angle);
 		}
-		this.xDistance = (this.width - this.circleRadius * 2) / ((double) (treeSize - 1));
+		this.xDistance = (zoomedWidth - this.circleRadius * 2) / ((double) (treeSize - 1));
 		// calculates the delta y distance by equally dividing up the height minus the circle diameter
-		this.yDistance = (this.height - 2 * circleRadius) / ((double) (treeHeight));
+		this.yDistance = (zoomedHeight - 2 * circleRadius) / ((double) (treeHeight));
 
 		// start at the upper left corner
 		this.nodeX = this.circleRadius + 2;
 		this.nodeY = this.circleRadius + 2;
 
+		this.font = this.fontFor(g2, this.circleRadius);
+		// positions are the center points, not the upper left corners. They are
+		// all worked out before anything is drawn, so parent arrows from left
+		// children point at where the parent is now, not where it was last frame.
+		return new TreeLayout(this.tree.getRoot(), treeSize, this.nodeX, this.nodeY, this.xDistance, this.yDistance,
+				this.circleRadius);
+	}
+
+	/**
+	 * draws the tiles that show in the clip, drawing any that aren't cached
+	 * yet. Tiles are placed on whole pixels so they meet without seams.
+	 *
+	 * @param g2
+	 */
+	private void drawTiles(Graphics2D g2) {
+		Rectangle clip = g2.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, this.getWidth(), this.getHeight());
+		}
+		// nothing is drawn past the zoomed window size, so neither are tiles
+		int columns = (int) Math.ceil((this.width + 4) * this.zoom / TILE_SIZE);
+		int rows = (int) Math.ceil((this.height + 4) * this.zoom / TILE_SIZE);
+		int firstColumn = Math.max(0, Math.floorDiv(clip.x - this.panX, TILE_SIZE));
+		int lastColumn = Math.min(columns - 1, Math.floorDiv(clip.x + clip.width - 1 - this.panX, TILE_SIZE));
+		int firstRow = Math.max(0, Math.floorDiv(clip.y - this.panY, TILE_SIZE));
+		int lastRow = Math.min(rows - 1, Math.floorDiv(clip.y + clip.height - 1 - this.panY, TILE_SIZE));
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				long key = ((long) column << 32) | (row & 0xffffffffL);
+				BufferedImage tile = this.tiles.get(key);
+				if (tile == null) {
+					tile = this.drawTile(column, row);
+					this.tiles.put(key, tile);
+				}
+				g2.drawImage(tile, this.panX + column * TILE_SIZE, this.panY + row * TILE_SIZE, null);
+			}
+		}
+	}
+
+	/**
+	 * draws one tile of the laid out tree. The painter skips everything
+	 * outside the tile's clip, so this costs about as much as what is in it.
+	 *
+	 * @param column
+	 * @param row
+	 * @return the tile, clear wherever the tree isn't
+	 */
+	private BufferedImage drawTile(int column, int row) {
+		BufferedImage tile = this.spareTiles.poll();
+		if (tile == null) {
+			tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+		}
+		Graphics2D g2 = tile.createGraphics();
+		// wipes out whatever a spare tile had on it
+		g2.setComposite(AlphaComposite.Clear);
+		g2.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+		g2.setComposite(AlphaComposite.SrcOver);
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g2.setClip(0, 0, TILE_SIZE, TILE_SIZE);
+		g2.translate(-column * TILE_SIZE, -row * TILE_SIZE);
+		g2.setFont(this.font);
+		this.painter.paint(g2, this.layout);
+		g2.dispose();
+		return tile;
+	}
+
+	/**
+	 * zooms in (or out, for a factor under 1) keeping the point under x, y
+	 * where it is. Never zooms out past the whole tree fitting the window.
+	 *
+	 * @param x
+	 * @param y
+	 * @param factor
+	 */
+	private void zoomAt(int x, int y, double factor) {
+		double maxZoom = 1;
+		if (this.circleRadius > 0) {
+			maxZoom = Math.max(1, MAX_ZOOMED_RADIUS * this.zoom / this.circleRadius);
+		}
+		double newZoom = Math.max(1, Math.min(maxZoom, this.zoom * factor));
+		if (newZoom == this.zoom) {
+			return;
+		}
+		double scale = newZoom / this.zoom;
+		this.panX = (int) Math.round(x - (x - this.panX) * scale);
+		this.panY = (int) Math.round(y - (y - this.panY) * scale);
+		this.zoom = newZoom;
+		this.repaint();
+	}
+
+	/**
+	 * moves the picture, which only needs tiles that are already drawn or
+	 * have just come into view
+	 *
+	 * @param dx
+	 * @param dy
+	 */
+	private void panBy(int dx, int dy) {
+		this.panX += dx;
+		this.panY += dy;
+		this.repaint();
+	}
+
+	/**
+	 * finds the biggest font whose characters fit in a circle of the given
+	 * radius. The answer only depends on the radius, so the last one is kept
+	 * and reused as long as the radius rounds to the same number of pixels.
+	 *
+	 * @param g2
+	 * @param radius
+	 * @return
+	 */
+	private Font fontFor(Graphics2D g2, double radius) {
+		long key = Math.round(radius);
+		if (this.font != null && key == this.fontRadius) {
+			return this.font;
+		}
+		this.fontRadius = key;
 		int size = 0;
 		// loops through font sizes, to get the right font size
 		while (true) {
-			// System.out.println(size);
-			FontMetrics metric = g2.getFontMetrics(new Font(FONT_NAME, Font.CENTER_BASELINE, size));
+			FontMetrics metric = g2.getFontMetrics(MEASURING_FONT.deriveFont((float) size));
 			int height = metric.getHeight();
 			int width = metric.getMaxAdvance();
 			// times 1.5 works out nice
 			double multiplyer = 1.5;
 			// if the diagonal is 1.5 times the radius stop making it bigger
-			if (Math.sqrt(height * height + width * width) > multiplyer * this.circleRadius) {
-				g2.setFont(new Font(FONT_NAME, Font.PLAIN, --size));
-				// System.out.println(g2.getFont().getSize());
-				break; // done
+			if (Math.sqrt(height * height + width * width) > multiplyer * radius) {
+				return new Font(FONT_NAME, Font.PLAIN, --size);
 			}
 			size++;
 		}
-		// RAISE THE BAR VVVVV
-		g2.setColor(Color.blue); // blue looks so much better
-		g2.fill(new Rectangle2D.Double(this.width - 5, 50, 10, 5));
-		g2.fill(new Rectangle2D.Double(this.width - 10, 60, 20, 5));
-		g2.fill(new Rectangle2D.Double(this.width - 15, 70, 30, 5));
-		g2.fill(new Rectangle2D.Double(this.width - 20, 80, 40, 5));
-		g2.fill(new Rectangle2D.Double(this.width - 25, 90, 50, 5));
-		// // RAISE THE BAR ^^^^^
-		AbstractDisplayableNode current = this.tree.getRoot();
-		// CURRENT.POINT = THE CENTER POINT, NOT THE UPPER LEFT CORNER
-		// System.out.println();
-		current.paintHelper(g2, this.nodeX, this.nodeY, this.xDistance, this.yDistance, this.circleRadius);
-		// System.out.println("DONE");
+	}
+
+	/**
+	 * Called whenever the tree changes. Only the first change after a frame
+	 * schedules a repaint, FRAME_MILLIS later, so a burst of edits is drawn
+	 * once with all of them in it.
+	 */
+	void treeChanged() {
+		if (!this.shouldRun.get() || !this.repaintPending.compareAndSet(false, true)) {
+			return;
+		}
+		this.frameTimer.restart();
 	}
 	
 	public void show() {
@@ -135,22 +373,70 @@ public class DisplayableBinaryTreeComponent extends JComponent {
 		this.frame.getContentPane().add(this);
 		this.frame.setVisible(true);
 		this.frame.toFront();
-		this.shouldRun.set(true);
-		Runnable repainter = new Runnable() {
+		// repaints when the tree changes instead of polling it; resizing the
+		// window repaints on its own
+		this.frameTimer = new Timer(FRAME_MILLIS, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				repaintPending.set(false);
+				repaint();
+			}
+		});
+		this.frameTimer.setRepeats(false);
+		// a tree that doesn't report its changes is redrawn every so often,
+		// until it does report one
+		this.pollTimer = new Timer(POLL_MILLIS, new ActionListener() {
 			@Override
-			public void run() {
-				try {
-					while (shouldRun.get()) {
-						Thread.sleep(10);
-						repaint();
-					}
-				} catch (InterruptedException exception) {
-					// Reports interrupt
+			public void actionPerformed(ActionEvent event) {
+				if (tree.reportsChanges()) {
+					pollTimer.stop();
+				} else {
+					repaint();
 				}
 			}
-		};
-		new Thread(repainter).start();
+		});
+		this.pollTimer.start();
+		// the wheel zooms around the mouse, dragging pans and double clicking
+		// goes back to the whole tree
+		MouseAdapter zoomAndPan = new MouseAdapter() {
+			private int lastX;
+			private int lastY;
+
+			@Override
+			public void mousePressed(MouseEvent event) {
+				this.lastX = event.getX();
+				this.lastY = event.getY();
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent event) {
+				panBy(event.getX() - this.lastX, event.getY() - this.lastY);
+				this.lastX = event.getX();
+				this.lastY = event.getY();
+			}
 
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent event) {
+				zoomAt(event.getX(), event.getY(), Math.pow(ZOOM_STEP, -event.getPreciseWheelRotation()));
+			}
+
+			@Override
+			public void mouseClicked(MouseEvent event) {
+				if (event.getClickCount() == 2) {
+					zoom = 1;
+					panX = 0;
+					panY = 0;
+					repaint();
+				}
+			}
+		};
+		this.addMouseListener(zoomAndPan);
+		this.addMouseMotionListener(zoomAndPan);
+		this.addMouseWheelListener(zoomAndPan);
+		this.shouldRun.set(true);
+		if (this.goingCrazy) {
+			this.treeChanged();
+		}
 	}
 
 	/**
@@ -159,6 +445,8 @@ public class DisplayableBinaryTreeComponent extends JComponent {
 	 */
 	public void close() {
 		shouldRun.set(false);
+		this.frameTimer.stop();
+		this.pollTimer.stop();
 		this.frame.dispose();
 	}
 }
@@ -0,0 +1,196 @@
+package gui;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Where every node of a displayable tree goes on screen. This lives in the GUI
+ * rather than in the nodes, so trees that are never shown don't pay for it.
+ * Nodes are numbered by their inorder position, and everything about a node is
+ * stored in arrays under that number.
+ *
+ */
+class TreeLayout {
+	private final Map<AbstractDisplayableNode, Integer> indices;
+	private AbstractDisplayableNode[] nodes;
+	private double[] x;
+	private double[] y;
+	private int[] left;
+	private int[] right;
+	private int[] parent;
+	// the numbers of the leftmost and rightmost nodes in each node's subtree,
+	// and the y of its lowest level, so the painter can tell how much room a
+	// whole subtree takes up without walking it
+	private int[] first;
+	private int[] last;
+	private double[] bottom;
+	private int root = -1;
+	private int count;
+	private final double radius;
+
+	/**
+	 * lays out the tree under root inorder, starting with the center of the
+	 * leftmost node at (startX, startY) and moving deltaX to the right for
+	 * each node and deltaY down for each level.
+	 *
+	 * @param root
+	 * @param sizeHint
+	 *            roughly how many nodes the tree has
+	 * @param startX
+	 * @param startY
+	 * @param deltaX
+	 * @param deltaY
+	 * @param radius
+	 */
+	TreeLayout(AbstractDisplayableNode root, int sizeHint, double startX, double startY, double deltaX,
+			double deltaY, double radius) {
+		int capacity = Math.max(sizeHint, 1);
+		this.indices = new HashMap<>(capacity * 2);
+		this.nodes = new AbstractDisplayableNode[capacity];
+		this.x = new double[capacity];
+		this.y = new double[capacity];
+		this.left = new int[capacity];
+		this.right = new int[capacity];
+		this.first = new int[capacity];
+		this.last = new int[capacity];
+		this.bottom = new double[capacity];
+		this.radius = radius;
+		if (root != null) {
+			this.root = this.layout(root, startX, startY, deltaX, deltaY);
+		}
+
+		// parents can only be looked up once every node has a number
+		this.parent = new int[this.count];
+		for (int i = 0; i < this.count; i++) {
+			this.parent[i] = -1;
+			if (this.nodes[i].hasParent()) {
+				Integer index = this.indices.get(this.nodes[i].getParent());
+				if (index != null) {
+					this.parent[i] = index;
+				}
+			}
+		}
+	}
+
+	/**
+	 * recursively lays out the subtree under node, returning the number it
+	 * was given
+	 */
+	private int layout(AbstractDisplayableNode node, double startX, double y, double deltaX, double deltaY) {
+		int leftIndex = -1;
+		if (node.hasLeft()) {
+			leftIndex = this.layout(node.getLeft(), startX, y + deltaY, deltaX, deltaY);
+		}
+		int index = this.count++;
+		if (index == this.nodes.length) {
+			this.grow();
+		}
+		this.nodes[index] = node;
+		this.indices.put(node, index);
+		this.x[index] = startX + index * deltaX;
+		this.y[index] = y;
+		this.left[index] = leftIndex;
+		this.right[index] = -1;
+		this.first[index] = index;
+		this.bottom[index] = y;
+		if (leftIndex != -1) {
+			this.first[index] = this.first[leftIndex];
+			this.bottom[index] = this.bottom[leftIndex];
+		}
+		this.last[index] = index;
+		if (node.hasRight()) {
+			int rightIndex = this.layout(node.getRight(), startX, y + deltaY, deltaX, deltaY);
+			this.right[index] = rightIndex;
+			this.last[index] = this.last[rightIndex];
+			this.bottom[index] = Math.max(this.bottom[index], this.bottom[rightIndex]);
+		}
+		return index;
+	}
+
+	private void grow() {
+		int capacity = this.nodes.length * 2;
+		this.nodes = Arrays.copyOf(this.nodes, capacity);
+		this.x = Arrays.copyOf(this.x, capacity);
+		this.y = Arrays.copyOf(this.y, capacity);
+		this.left = Arrays.copyOf(this.left, capacity);
+		this.right = Arrays.copyOf(this.right, capacity);
+		this.first = Arrays.copyOf(this.first, capacity);
+		this.last = Arrays.copyOf(this.last, capacity);
+		this.bottom = Arrays.copyOf(this.bottom, capacity);
+	}
+
+	/**
+	 * @return the number of nodes that were laid out
+	 */
+	int size() {
+		return this.count;
+	}
+
+	/**
+	 * @return the number of the root, or -1 if the tree is empty
+	 */
+	int getRoot() {
+		return this.root;
+	}
+
+	/**
+	 * @return the number of the leftmost node in the subtree under index
+	 */
+	int getFirst(int index) {
+		return this.first[index];
+	}
+
+	/**
+	 * @return the number of the rightmost node in the subtree under index
+	 */
+	int getLast(int index) {
+		return this.last[index];
+	}
+
+	/**
+	 * @return the y of the center of the lowest node in the subtree under
+	 *         index
+	 */
+	double getBottom(int index) {
+		return this.bottom[index];
+	}
+
+	AbstractDisplayableNode getNode(int index) {
+		return this.nodes[index];
+	}
+
+	double getX(int index) {
+		return this.x[index];
+	}
+
+	double getY(int index) {
+		return this.y[index];
+	}
+
+	double getRadius() {
+		return this.radius;
+	}
+
+	/**
+	 * @return the number of the left child, or -1 if there isn't one
+	 */
+	int getLeft(int index) {
+		return this.left[index];
+	}
+
+	/**
+	 * @return the number of the right child, or -1 if there isn't one
+	 */
+	int getRight(int index) {
+		return this.right[index];
+	}
+
+	/**
+	 * @return the number of the node that getParent() points at, or -1 if
+	 *         there isn't one (or it isn't part of the tree)
+	 */
+	int getParent(int index) {
+		return this.parent[index];
+	}
+}
@@ -0,0 +1,323 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Draws the nodes and arrows of a tree that has already been laid out by a
+ * TreeLayout. A frame can draw tens of thousands of nodes, so the shapes are
+ * reused from one node to the next instead of being made for each one, and
+ * painters are only ever used from the event dispatch thread.
+ */
+class TreePainter {
+	private static Color CIRCLE_COLOR = Color.WHITE;
+	// lightish green to keep in line with our stormy color scheme
+	private static Color TEXT_COLOR = new Color(0x66FFB2);
+	// a light blue color, keeping in line with the stormy color scheme
+	public static final Color FOWARD_ARROW_COLOR = new Color(0x3399FF);
+	public static final Color PARENT_ARROW_COLOR = new Color(0x77619A);
+	// the circle color faded most of the way into the background, for
+	// collapsed subtrees
+	private static final Color SUMMARY_COLOR = new Color(0x888888);
+	// subtrees narrower than this many pixels are drawn as one triangle
+	private static final double MIN_SUBTREE_WIDTH = 4;
+	private static final int MAX_LABELS = 1024;
+
+	private final Ellipse2D.Double circle = new Ellipse2D.Double();
+	private final Line2D.Double line = new Line2D.Double();
+	private final Path2D.Double path = new Path2D.Double();
+	// bounds of the labels most recently drawn in labelFont. Balance codes and
+	// characters are few, but ranks go up to the size of the tree, so only the
+	// MAX_LABELS used last are kept. Most nodes are near the bottom of the
+	// tree, where ranks are small, so those stay.
+	private final Map<String, Rectangle2D> labelBounds = new LinkedHashMap<String, Rectangle2D>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Rectangle2D> eldest) {
+			return this.size() > MAX_LABELS;
+		}
+	};
+	private Font labelFont;
+
+	/**
+	 * paints the nodes in the layout along with their child and parent
+	 * arrows. It works down from the root, so whole subtrees can be left out:
+	 * ones that are entirely outside the clip aren't drawn at all, and ones
+	 * that are too narrow for their nodes to be told apart are drawn as a
+	 * single triangle (see drawSummary).
+	 *
+	 * @param g2
+	 * @param layout
+	 */
+	public void paint(Graphics2D g2, TreeLayout layout) {
+		if (layout.getRoot() == -1) {
+			return;
+		}
+		Rectangle clip = g2.getClipBounds();
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = layout.getRoot();
+		while (top > 0) {
+			int i = stack[--top];
+			double left = layout.getX(layout.getFirst(i));
+			double right = layout.getX(layout.getLast(i));
+			if (clip != null && !this.mightShow(layout, i, left, right, clip)) {
+				continue;
+			}
+			if (layout.getFirst(i) != layout.getLast(i) && right - left < MIN_SUBTREE_WIDTH) {
+				this.drawSummary(g2, layout, i);
+				if (layout.getParent(i) != -1) {
+					this.drawParentArrow(g2, layout, i);
+				}
+				continue;
+			}
+			this.drawNode(g2, layout, i);
+			if (layout.getLeft(i) != -1) {
+				this.drawFowardArrow(g2, layout, i, layout.getLeft(i));
+			}
+			if (layout.getRight(i) != -1) {
+				this.drawFowardArrow(g2, layout, i, layout.getRight(i));
+			}
+			if (layout.getParent(i) != -1) {
+				this.drawParentArrow(g2, layout, i);
+			}
+			if (top + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			if (layout.getRight(i) != -1) {
+				stack[top++] = layout.getRight(i);
+			}
+			if (layout.getLeft(i) != -1) {
+				stack[top++] = layout.getLeft(i);
+			}
+		}
+	}
+
+	/**
+	 * checks whether anything drawn for the subtree under i could be in the
+	 * clip. That is its nodes, but also the arrow up to its parent, and
+	 * arrow heads, which stick out from their line by up to twice the square
+	 * root of its length.
+	 *
+	 * @param layout
+	 * @param i
+	 * @param left
+	 *            x of the subtree's first node
+	 * @param right
+	 *            x of the subtree's last node
+	 * @param clip
+	 * @return false if the subtree can be left out
+	 */
+	private boolean mightShow(TreeLayout layout, int i, double left, double right, Rectangle clip) {
+		double top = layout.getY(i);
+		double bottom = layout.getBottom(i);
+		// no arrow inside the subtree is longer than its diagonal
+		double longest = Math.hypot(right - left, bottom - top);
+		int parent = layout.getParent(i);
+		if (parent != -1) {
+			left = Math.min(left, layout.getX(parent));
+			right = Math.max(right, layout.getX(parent));
+			top = Math.min(top, layout.getY(parent));
+			longest = Math.max(longest, this.distance(layout, i, parent));
+		}
+		double margin = layout.getRadius() + 2 * Math.sqrt(longest) + 1;
+		return right + margin >= clip.getMinX() && left - margin <= clip.getMaxX()
+				&& top - margin <= clip.getMaxY() && bottom + margin >= clip.getMinY();
+	}
+
+	/**
+	 * draws a collapsed subtree as a triangle from its root down to its
+	 * lowest level, as wide as its nodes would be. So the width shows how many
+	 * nodes it has and the height how tall it is.
+	 *
+	 * @param g2
+	 * @param layout
+	 * @param i
+	 */
+	private void drawSummary(Graphics2D g2, TreeLayout layout, int i) {
+		double radius = layout.getRadius();
+		double top = layout.getY(i) - radius;
+		double bottom = layout.getBottom(i) + radius;
+		double left = layout.getX(layout.getFirst(i)) - radius;
+		double right = layout.getX(layout.getLast(i)) + radius;
+		this.path.reset();
+		this.path.moveTo(layout.getX(i), top);
+		this.path.lineTo(right, bottom);
+		this.path.lineTo(left, bottom);
+		this.path.closePath();
+		g2.setColor(SUMMARY_COLOR);
+		g2.fill(this.path);
+	}
+
+	/**
+	 * draws the node with the given number on the current Graphics2D object
+	 *
+	 * @param g2
+	 * @param layout
+	 * @param i
+	 */
+	private void drawNode(Graphics2D g2, TreeLayout layout, int i) {
+		double x = layout.getX(i);
+		double y = layout.getY(i);
+		double radius = layout.getRadius();
+		g2.setColor(CIRCLE_COLOR);
+		// sets the circle taking into account that x, y is the centerPoint
+		this.circle.setFrame(x - radius, y - radius, radius * 2, radius * 2);
+		g2.draw(this.circle);
+
+		AbstractDisplayableNode node = layout.getNode(i);
+		g2.setColor(TEXT_COLOR);
+		// don't know why these fractions work so good
+		this.drawCentered(g2, node.getRankString(), x, y, -1 / 3.0);
+		this.drawCentered(g2, node.getBalanceString(), x, y, 1 / 4.0);
+		this.drawCentered(g2, node.getDataString(), x, y, 5 / 6.0);
+	}
+
+	/**
+	 * draws the string centered horizontally on x, shifted down from y by the
+	 * given fraction of its height
+	 *
+	 * @param g2
+	 * @param text
+	 * @param x
+	 * @param y
+	 * @param heightFraction
+	 */
+	private void drawCentered(Graphics2D g2, String text, double x, double y, double heightFraction) {
+		Rectangle2D bounds = this.boundsOf(g2, text);
+		// finds how much to shift the string to center the letter
+		int upperLeftX = (int) (x - bounds.getWidth() / 2);
+		int upperLeftY = (int) (y + heightFraction * bounds.getHeight());
+		g2.drawString(text, upperLeftX, upperLeftY);
+	}
+
+	/**
+	 * measures text in the current font, remembering the answer until the
+	 * font changes
+	 *
+	 * @param g2
+	 * @param text
+	 * @return the bounds of text; not to be changed
+	 */
+	private Rectangle2D boundsOf(Graphics2D g2, String text) {
+		Font font = g2.getFont();
+		if (!font.equals(this.labelFont)) {
+			this.labelBounds.clear();
+			this.labelFont = font;
+		}
+		Rectangle2D bounds = this.labelBounds.get(text);
+		if (bounds == null) {
+			bounds = g2.getFontMetrics().getStringBounds(text, g2);
+			this.labelBounds.put(text, bounds);
+		}
+		return bounds;
+	}
+
+	/**
+	 * draws a parent arrow on the given graphics object from the given node to
+	 * its parent
+	 *
+	 * @param g2
+	 * @param layout
+	 * @param i
+	 */
+	private void drawParentArrow(Graphics2D g2, TreeLayout layout, int i) {
+		double sizeMultiplier = 0.75;
+		int parent = layout.getParent(i);
+		// if there is a child arrow and a parent arrow on the same line, cut line part in half
+		boolean doubleArrow = layout.getLeft(parent) == i || layout.getRight(parent) == i;
+
+		this.drawArrow(g2, layout, i, parent, PARENT_ARROW_COLOR, sizeMultiplier, doubleArrow);
+	}
+
+	/**
+	 * draws a forward arrow on the given graphics object from one node to
+	 * its child
+	 *
+	 * @param g2
+	 * @param layout
+	 * @param i
+	 * @param child
+	 */
+	private void drawFowardArrow(Graphics2D g2, TreeLayout layout, int i, int child) {
+		double sizeMultiplier = 1;
+		this.drawArrow(g2, layout, i, child, FOWARD_ARROW_COLOR, sizeMultiplier, true);
+	}
+
+	/**
+	 * draws an arrow from the start node to the destination node with the
+	 * given color and size multiplier. The head touches the edge of the
+	 * destination node, and the stem runs back from there towards the start
+	 * node, only half way if there is another arrow on the same line. Points
+	 * are worked out along the line between the centers, so nothing has to
+	 * be rotated.
+	 *
+	 * @param g2
+	 * @param layout
+	 * @param start
+	 * @param destination
+	 * @param color
+	 * @param sizeMultiplier
+	 * @param doubleLine
+	 */
+	private void drawArrow(Graphics2D g2, TreeLayout layout, int start, int destination, Color color,
+			double sizeMultiplier, boolean doubleLine) {
+		double radius = layout.getRadius();
+		double distance = this.distance(layout, start, destination);
+		if (distance == 0) {
+			return;
+		}
+		// unit vector from the destination back towards the start
+		double backX = (layout.getX(start) - layout.getX(destination)) / distance;
+		double backY = (layout.getY(start) - layout.getY(destination)) / distance;
+		// the point on the edge of the destination facing the start
+		double edgeX = layout.getX(destination) + backX * radius;
+		double edgeY = layout.getY(destination) + backY * radius;
+		double length = distance - 2 * radius; // distance is from edge to edge
+		if (length < 0) {
+			// the nodes overlap, so draw the arrow the right way
+			backX = -backX;
+			backY = -backY;
+			length = -length;
+		}
+		g2.setColor(color);
+		double stem = doubleLine ? length / 2.0 : length;
+		this.line.setLine(edgeX, edgeY, edgeX + backX * stem, edgeY + backY * stem);
+		g2.draw(this.line);
+
+		// draws the arrow head, scaling with the sqrt of the length of the arrow
+		double size = Math.sqrt(length) * sizeMultiplier;
+		double baseX = edgeX + 2 * size * backX;
+		double baseY = edgeY + 2 * size * backY;
+		this.path.reset();
+		this.path.moveTo(edgeX, edgeY);
+		this.path.lineTo(baseX + size * backY, baseY - size * backX);
+		this.path.lineTo(baseX - size * backY, baseY + size * backX);
+		this.path.closePath();
+		g2.fill(this.path);
+	}
+
+	/**
+	 * calculates the distance between the centers of two nodes
+	 *
+	 * @param layout
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	private double distance(TreeLayout layout, int start, int end) {
+		double dx = layout.getX(start) - layout.getX(end);
+		double dy = layout.getY(start) - layout.getY(end);
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+}